@@ -0,0 +1,568 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Benchmarks the operations of {@link AdjacencyListGraph} and the routing of
+ * {@link Main} on synthetic graphs, so a performance change can be measured
+ * before and after. The {@code route-} benchmarks time point to point
+ * queries of every {@link RoutingEngine} on a snapshot of the graph that is
+ * built, with the preprocessing of the engine, before the timing starts.
+ *
+ * Every benchmark runs on every combination of the graph parameters:
+ * <ul>
+ * <li>{@code -vertices 1000,10000} number of airports</li>
+ * <li>{@code -degree 4,16} average number of connections per airport</li>
+ * <li>{@code -skew 0,1} how strongly connections gather at hubs: the
+ * airport of rank r is chosen with probability proportional to
+ * 1/(r+1)^skew, so 0 is uniform and 1 has a few large hubs</li>
+ * </ul>
+ * Each benchmark is warmed up for {@code -warmup} iterations, which are
+ * discarded, then measured for {@code -iterations} iterations. Graphs are
+ * generated from a fixed {@code -seed}, so two runs measure the same work.
+ *
+ * Every measured iteration is written as a CSV line
+ * {@code benchmark,vertices,degree,skew,iteration,ops,ns_per_op} to
+ * {@code -out} (standard output by default). The median of each benchmark is
+ * printed to standard error, next to the median of a previous run given by
+ * {@code -baseline results.csv}.
+ *
+ * @author Minh Nguyen
+ */
+public class GraphBenchmark {
+
+	private static final String[] MODES = { "plane", "train", "bus" };
+
+	// results are summed here so no benchmark loop can be optimized away
+	private static volatile long sink;
+
+	/**
+	 * A synthetic graph as arrays of distinct connections, before it is
+	 * inserted into a graph.
+	 */
+	private static class Network {
+		private String[] names;
+		private int[] from;
+		private int[] to;
+		private int[] weights;
+		private String[] modes;
+	}
+
+	/**
+	 * A measured benchmark, run once per iteration.
+	 */
+	private interface Benchmark {
+		/**
+		 * Runs one iteration and returns the time taken.
+		 *
+		 * @param network Graph parameters of the run
+		 * @param random  Source of random choices
+		 * @return time taken in nanoseconds
+		 */
+		long run(Network network, Random random);
+
+		/**
+		 * Returns the number of operations one iteration performs.
+		 *
+		 * @param network Graph parameters of the run
+		 * @return number of operations
+		 */
+		int ops(Network network);
+	}
+
+	public static void main(String[] args) throws IOException {
+		int[] vertexCounts = { 1000, 10000 };
+		int[] degrees = { 4, 16 };
+		double[] skews = { 0, 1 };
+		int warmup = 3;
+		int iterations = 5;
+		long seed = 42;
+		String out = null;
+		String baseline = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-vertices"))
+				vertexCounts = parseInts(args[i + 1]);
+			else if (args[i].equals("-degree"))
+				degrees = parseInts(args[i + 1]);
+			else if (args[i].equals("-skew"))
+				skews = parseDoubles(args[i + 1]);
+			else if (args[i].equals("-warmup"))
+				warmup = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-iterations"))
+				iterations = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[i + 1]);
+			else if (args[i].equals("-out"))
+				out = args[i + 1];
+			else if (args[i].equals("-baseline"))
+				baseline = args[i + 1];
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		if (iterations < 1)
+			throw new IllegalArgumentException("-iterations must be positive");
+
+		Map<String, Double> previous = (baseline != null ? readMedians(baseline) : new HashMap<String, Double>());
+		Map<String, Benchmark> benchmarks = benchmarks();
+		PrintWriter csv = (out != null ? new PrintWriter(new FileWriter(out)) : new PrintWriter(System.out));
+		csv.println("benchmark,vertices,degree,skew,iteration,ops,ns_per_op");
+		for (int vertices : vertexCounts) {
+			for (int degree : degrees) {
+				for (double skew : skews) {
+					Network network = generate(vertices, degree, skew, seed);
+					for (Map.Entry<String, Benchmark> entry : benchmarks.entrySet()) {
+						String key = entry.getKey() + "," + vertices + "," + degree + "," + skew;
+						Benchmark benchmark = entry.getValue();
+						Random random = new Random(seed);
+						for (int i = 0; i < warmup; i++)
+							benchmark.run(network, random);
+						double[] times = new double[iterations];
+						int ops = benchmark.ops(network);
+						for (int i = 0; i < iterations; i++) {
+							times[i] = (double) benchmark.run(network, random) / ops;
+							csv.println(key + "," + i + "," + ops + ","
+									+ String.format(Locale.ROOT, "%.1f", times[i]));
+						}
+						csv.flush();
+						double median = median(times);
+						Double before = previous.get(key);
+						System.err.println(String.format(Locale.ROOT, "%-40s %12.1f ns/op", key, median)
+								+ (before == null ? ""
+										: String.format(Locale.ROOT, "  baseline %12.1f  %+.1f%%", before,
+												(median - before) * 100 / before)));
+					}
+				}
+			}
+		}
+		if (out != null)
+			csv.close();
+		else
+			csv.flush();
+	}
+
+	/**
+	 * Returns every benchmark by name, in the order they are run.
+	 *
+	 * @return benchmarks by name
+	 */
+	private static Map<String, Benchmark> benchmarks() {
+		Map<String, Benchmark> benchmarks = new LinkedHashMap<String, Benchmark>();
+		benchmarks.put("insertEdge", new Benchmark() {
+			@Override
+			public long run(Network network, Random random) {
+				AdjacencyListGraph<String, Integer> g = new AdjacencyListGraph<String, Integer>(false);
+				List<Vertex<String>> vertices = insertVertices(g, network);
+				long start = System.nanoTime();
+				for (int i = 0; i < network.from.length; i++)
+					g.insertEdge(vertices.get(network.from[i]), vertices.get(network.to[i]), network.weights[i],
+							network.modes[i]);
+				long time = System.nanoTime() - start;
+				sink += g.numEdges();
+				return time;
+			}
+
+			@Override
+			public int ops(Network network) {
+				return network.from.length;
+			}
+		});
+		benchmarks.put("getEdge", new Benchmark() {
+			private Network built;
+			private AdjacencyListGraph<String, Integer> g;
+			private List<Vertex<String>> vertices;
+
+			@Override
+			public long run(Network network, Random random) {
+				if (built != network) {
+					g = new AdjacencyListGraph<String, Integer>(false);
+					vertices = insertVertices(g, network);
+					insertEdges(g, vertices, network);
+					built = network;
+				}
+				// half of the lookups hit a connection, half are random pairs
+				int ops = ops(network);
+				int[] us = new int[ops], vs = new int[ops];
+				for (int i = 0; i < ops; i++) {
+					if (i % 2 == 0) {
+						int e = random.nextInt(network.from.length);
+						us[i] = network.from[e];
+						vs[i] = network.to[e];
+					} else {
+						us[i] = random.nextInt(vertices.size());
+						vs[i] = random.nextInt(vertices.size());
+					}
+				}
+				long found = 0;
+				long start = System.nanoTime();
+				for (int i = 0; i < ops; i++)
+					if (g.getEdge(vertices.get(us[i]), vertices.get(vs[i])) != null)
+						found++;
+				long time = System.nanoTime() - start;
+				sink += found;
+				return time;
+			}
+
+			@Override
+			public int ops(Network network) {
+				return 100000;
+			}
+		});
+		benchmarks.put("removeVertex", new Benchmark() {
+			@Override
+			public long run(Network network, Random random) {
+				AdjacencyListGraph<String, Integer> g = new AdjacencyListGraph<String, Integer>(false);
+				List<Vertex<String>> vertices = insertVertices(g, network);
+				insertEdges(g, vertices, network);
+				// remove a random tenth of the airports with their connections
+				List<Vertex<String>> removed = new ArrayList<Vertex<String>>(vertices);
+				Collections.shuffle(removed, random);
+				removed = removed.subList(0, ops(network));
+				long start = System.nanoTime();
+				for (Vertex<String> v : removed)
+					g.removeVertex(v);
+				long time = System.nanoTime() - start;
+				sink += g.numVertices();
+				return time;
+			}
+
+			@Override
+			public int ops(Network network) {
+				return Math.max(1, network.names.length / 10);
+			}
+		});
+		benchmarks.put("edges", new Benchmark() {
+			private Network built;
+			private AdjacencyListGraph<String, Integer> g;
+
+			@Override
+			public long run(Network network, Random random) {
+				if (built != network) {
+					g = new AdjacencyListGraph<String, Integer>(false);
+					insertEdges(g, insertVertices(g, network), network);
+					built = network;
+				}
+				long total = 0;
+				long start = System.nanoTime();
+				for (Edge<Integer> e : g.edges())
+					total += e.getElement();
+				long time = System.nanoTime() - start;
+				sink += total;
+				return time;
+			}
+
+			@Override
+			public int ops(Network network) {
+				return network.from.length;
+			}
+		});
+		benchmarks.put("shortestPath", new Benchmark() {
+			private Network built;
+			private AdjacencyListGraph<String, Integer> g;
+			private List<Vertex<String>> vertices;
+
+			@Override
+			public long run(Network network, Random random) {
+				if (built != network) {
+					g = new AdjacencyListGraph<String, Integer>(false);
+					vertices = insertVertices(g, network);
+					insertEdges(g, vertices, network);
+					built = network;
+				}
+				long start = System.nanoTime();
+				for (int i = 0; i < ops(network); i++)
+					sink += Main.shortestPath(g, vertices.get(random.nextInt(vertices.size()))).size();
+				return System.nanoTime() - start;
+			}
+
+			@Override
+			public int ops(Network network) {
+				return 10;
+			}
+		});
+		benchmarks.put("shortestPathSnapshot", new Benchmark() {
+			private Network built;
+			private CompactGraph<String> snapshot;
+
+			@Override
+			public long run(Network network, Random random) {
+				if (built != network) {
+					AdjacencyListGraph<String, Integer> g = new AdjacencyListGraph<String, Integer>(false);
+					insertEdges(g, insertVertices(g, network), network);
+					snapshot = new CompactGraph<String>(g);
+					built = network;
+				}
+				long start = System.nanoTime();
+				for (int i = 0; i < ops(network); i++)
+					sink += Main.shortestPath(snapshot, random.nextInt(snapshot.numVertices())).length;
+				return System.nanoTime() - start;
+			}
+
+			@Override
+			public int ops(Network network) {
+				return 10;
+			}
+		});
+		benchmarks.put("spTree", new Benchmark() {
+			private Network built;
+			private AdjacencyListGraph<String, Integer> g;
+			private List<Vertex<String>> vertices;
+			private List<Map<Vertex<String>, Integer>> distances;
+
+			@Override
+			public long run(Network network, Random random) {
+				if (built != network) {
+					g = new AdjacencyListGraph<String, Integer>(false);
+					vertices = insertVertices(g, network);
+					insertEdges(g, vertices, network);
+					// the trees are timed, not the searches they start from
+					distances = new ArrayList<Map<Vertex<String>, Integer>>();
+					for (int i = 0; i < ops(network); i++)
+						distances.add(Main.shortestPath(g, vertices.get(i * vertices.size() / ops(network))));
+					built = network;
+				}
+				long start = System.nanoTime();
+				for (int i = 0; i < ops(network); i++)
+					sink += Main.spTree(g, vertices.get(i * vertices.size() / ops(network)), distances.get(i)).size();
+				return System.nanoTime() - start;
+			}
+
+			@Override
+			public int ops(Network network) {
+				return 10;
+			}
+		});
+		for (String engine : new String[] { "dijkstra", "bidirectional", "alt", "ch" }) {
+			benchmarks.put("route-" + engine, new Benchmark() {
+				private Network built;
+				private RoutingEngine<String> search;
+
+				@Override
+				public long run(Network network, Random random) {
+					if (built != network) {
+						// the snapshot and the preprocessing of the engine are
+						// not timed, only the queries on them
+						search = engine(network, engine);
+						built = network;
+					}
+					int ops = ops(network);
+					int[] sources = new int[ops], destinations = new int[ops];
+					for (int i = 0; i < ops; i++) {
+						sources[i] = random.nextInt(network.names.length);
+						destinations[i] = random.nextInt(network.names.length);
+					}
+					long total = 0;
+					long start = System.nanoTime();
+					for (int i = 0; i < ops; i++) {
+						Route<String> route = search.route(sources[i], destinations[i]);
+						if (route != null)
+							total += route.getTotal();
+					}
+					long time = System.nanoTime() - start;
+					sink += total;
+					return time;
+				}
+
+				@Override
+				public int ops(Network network) {
+					return 100;
+				}
+			});
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Returns a router over a generated network, for harnesses such as JMH
+	 * that can't name the classes of the default package. It answers a pair
+	 * of dense ids with the total weight of the route the engine finds
+	 * between them, or -1 if there is none.
+	 *
+	 * @param engine   Name of the engine, as for {@code -engine}
+	 * @param vertices Number of airports
+	 * @param degree   Average number of connections per airport
+	 * @param skew     Exponent of the hub distribution, 0 for uniform
+	 * @param seed     Seed of the random choices
+	 * @return Router taking the dense ids of origin and destination
+	 * @throws IllegalArgumentException if the engine is unknown or the
+	 *                                  network can't be generated
+	 */
+	public static IntBinaryOperator router(String engine, int vertices, int degree, double skew, long seed)
+			throws IllegalArgumentException {
+		RoutingEngine<String> search = engine(generate(vertices, degree, skew, seed), engine);
+		return (src, dest) -> {
+			Route<String> route = search.route(src, dest);
+			return (route == null ? -1 : route.getTotal());
+		};
+	}
+
+	/**
+	 * Builds a snapshot of a network and a routing engine over it.
+	 */
+	private static RoutingEngine<String> engine(Network network, String name) {
+		AdjacencyListGraph<String, Integer> g = new AdjacencyListGraph<String, Integer>(false);
+		insertEdges(g, insertVertices(g, network), network);
+		return Main.newEngine(name, new CompactGraph<String>(g), null, 8);
+	}
+
+	/**
+	 * Generates a network of distinct undirected connections with hubs.
+	 *
+	 * @param vertices Number of airports
+	 * @param degree   Average number of connections per airport
+	 * @param skew     Exponent of the hub distribution, 0 for uniform
+	 * @param seed     Seed of the random choices
+	 * @return Network
+	 * @throws IllegalArgumentException if there are fewer than 2 airports or
+	 *                                  more connections than pairs
+	 */
+	private static Network generate(int vertices, int degree, double skew, long seed)
+			throws IllegalArgumentException {
+		long edges = (long) vertices * degree / 2;
+		if (vertices < 2 || edges > (long) vertices * (vertices - 1) / 2)
+			throw new IllegalArgumentException("Can't connect " + vertices + " airports with degree " + degree);
+		Random random = new Random(seed);
+		// cumulative weight of the airports, by rank
+		double[] cumulative = new double[vertices];
+		double sum = 0;
+		for (int i = 0; i < vertices; i++) {
+			sum += 1 / Math.pow(i + 1, skew);
+			cumulative[i] = sum;
+		}
+
+		Network network = new Network();
+		network.names = new String[vertices];
+		for (int i = 0; i < vertices; i++)
+			network.names[i] = String.format(Locale.ROOT, "A%05d", i);
+		int count = (int) edges;
+		network.from = new int[count];
+		network.to = new int[count];
+		network.weights = new int[count];
+		network.modes = new String[count];
+		Set<Long> pairs = new HashSet<Long>();
+		for (int i = 0; i < count;) {
+			int u = pick(cumulative, random.nextDouble() * sum);
+			int v = pick(cumulative, random.nextDouble() * sum);
+			// with strong skew the hub pairs run out, so fall back to uniform
+			if (u == v || !pairs.add((long) Math.min(u, v) * vertices + Math.max(u, v))) {
+				u = random.nextInt(vertices);
+				v = random.nextInt(vertices);
+				if (u == v || !pairs.add((long) Math.min(u, v) * vertices + Math.max(u, v)))
+					continue;
+			}
+			network.from[i] = u;
+			network.to[i] = v;
+			network.weights[i] = 30 + random.nextInt(900);
+			network.modes[i] = MODES[random.nextInt(MODES.length)];
+			i++;
+		}
+		return network;
+	}
+
+	/**
+	 * Returns the rank whose cumulative weight first reaches x.
+	 */
+	private static int pick(double[] cumulative, double x) {
+		int i = Arrays.binarySearch(cumulative, x);
+		return Math.min(i < 0 ? -i - 1 : i, cumulative.length - 1);
+	}
+
+	/**
+	 * Inserts the airports of a network, returning their vertices by index.
+	 */
+	private static List<Vertex<String>> insertVertices(AdjacencyListGraph<String, Integer> g, Network network) {
+		List<Vertex<String>> vertices = new ArrayList<Vertex<String>>(network.names.length);
+		for (String name : network.names)
+			vertices.add(g.insertVertex(name));
+		return vertices;
+	}
+
+	/**
+	 * Inserts the connections of a network.
+	 */
+	private static void insertEdges(AdjacencyListGraph<String, Integer> g, List<Vertex<String>> vertices,
+			Network network) {
+		for (int i = 0; i < network.from.length; i++)
+			g.insertEdge(vertices.get(network.from[i]), vertices.get(network.to[i]), network.weights[i],
+					network.modes[i]);
+	}
+
+	/**
+	 * Returns the median of values, which are reordered.
+	 */
+	private static double median(double[] values) {
+		Arrays.sort(values);
+		int mid = values.length / 2;
+		return (values.length % 2 == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2);
+	}
+
+	/**
+	 * Reads the median ns/op of every benchmark of a previous run.
+	 *
+	 * @param path CSV file written by -out
+	 * @return median by "benchmark,vertices,degree,skew"
+	 * @throws IOException if the file can't be read
+	 */
+	private static Map<String, Double> readMedians(String path) throws IOException {
+		Map<String, List<Double>> times = new HashMap<String, List<Double>>();
+		BufferedReader in = new BufferedReader(new FileReader(path));
+		try {
+			String line = in.readLine();
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split(",");
+				if (fields.length != 7)
+					continue;
+				String key = fields[0] + "," + fields[1] + "," + fields[2] + "," + fields[3];
+				if (!times.containsKey(key))
+					times.put(key, new ArrayList<Double>());
+				times.get(key).add(Double.parseDouble(fields[6]));
+			}
+		} finally {
+			in.close();
+		}
+		Map<String, Double> medians = new HashMap<String, Double>();
+		for (Map.Entry<String, List<Double>> entry : times.entrySet()) {
+			double[] values = new double[entry.getValue().size()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = entry.getValue().get(i);
+			medians.put(entry.getKey(), median(values));
+		}
+		return medians;
+	}
+
+	/**
+	 * Parses a comma separated list of ints.
+	 */
+	private static int[] parseInts(String list) {
+		String[] parts = list.split(",");
+		int[] values = new int[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			values[i] = Integer.parseInt(parts[i]);
+		return values;
+	}
+
+	/**
+	 * Parses a comma separated list of doubles.
+	 */
+	private static double[] parseDoubles(String list) {
+		String[] parts = list.split(",");
+		double[] values = new double[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			values[i] = Double.parseDouble(parts[i]);
+		return values;
+	}
+
+}
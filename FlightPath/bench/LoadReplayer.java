@@ -0,0 +1,198 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a workload of commands through the command loop of {@link Main} at
+ * a fixed rate and reports the latency percentiles of each kind of command.
+ *
+ * Main runs in this JVM, reading the commands from a pipe and writing to a
+ * stream that only watches for the end of each command. Command i is due at
+ * {@code i / rate} seconds; it is sent when it is due, or at once if the
+ * replayer is behind. Its latency is measured from when it was due, not from
+ * when it was sent, so a slow command also counts against the commands that
+ * queued behind it instead of hiding them (coordinated omission). The
+ * latency from sending is reported too; the gap between both shows how much
+ * of the latency is queueing.
+ *
+ * Usage: {@code java LoadReplayer -workload commands.txt -rate 1000 [-warmup 1000] [Main options]},
+ * e.g. {@code -load net.txt -engine ch}, with a workload written by
+ * {@link NetworkGenerator}. The first {@code -warmup} commands run at the
+ * same rate but are left out of the report. The workload must not hold
+ * commands with one argument, which would be taken for the end of the
+ * command before them.
+ *
+ * @author Minh Nguyen
+ */
+public class LoadReplayer {
+
+	// sent after every command; answered by one error line without reading
+	// or changing the graph, so the line marks the end of the command
+	private static final String MARKER = "?k";
+	private static final String MARKER_REPLY = "Commands with 1 argument must start with '?'";
+
+	/**
+	 * Records the time every command ends, from the output of Main.
+	 */
+	private static class CompletionStream extends OutputStream {
+		private byte[] reply = MARKER_REPLY.getBytes(StandardCharsets.UTF_8);
+		private long[] completed;
+		private volatile int count = 0;
+		// bytes of the current line matching the reply, -1 once it can't
+		private int matched = 0;
+
+		private CompletionStream(int commands) {
+			completed = new long[commands];
+		}
+
+		@Override
+		public void write(int b) {
+			if (b == '\n') {
+				if (matched == reply.length && count < completed.length) {
+					completed[count] = System.nanoTime();
+					count++;
+				}
+				matched = 0;
+			} else if (b != '\r' && matched >= 0)
+				matched = (matched < reply.length && reply[matched] == (byte) b ? matched + 1 : -1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			for (int i = off; i < off + len; i++)
+				write(b[i]);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String workload = null;
+		double rate = 1000;
+		int warmup = 0;
+		List<String> mainArgs = new ArrayList<String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-workload"))
+				workload = args[i + 1];
+			else if (args[i].equals("-rate"))
+				rate = Double.parseDouble(args[i + 1]);
+			else if (args[i].equals("-warmup"))
+				warmup = Integer.parseInt(args[i + 1]);
+			else {
+				mainArgs.add(args[i]);
+				mainArgs.add(args[i + 1]);
+			}
+		}
+		if (workload == null || rate <= 0)
+			throw new IllegalArgumentException("-workload and a positive -rate must be given");
+
+		List<String> commands = new ArrayList<String>();
+		BufferedReader file = new BufferedReader(new FileReader(workload));
+		try {
+			String line;
+			while ((line = file.readLine()) != null)
+				if (!line.trim().isEmpty())
+					commands.add(line);
+		} finally {
+			file.close();
+		}
+		int n = commands.size();
+		warmup = Math.min(warmup, n);
+
+		// run Main on the other end of a pipe
+		PrintStream console = System.out;
+		PipedOutputStream pipe = new PipedOutputStream();
+		PipedInputStream in = new PipedInputStream(pipe, 1 << 16);
+		CompletionStream completions = new CompletionStream(n);
+		System.setIn(in);
+		System.setOut(new PrintStream(completions, true));
+		Throwable[] failure = new Throwable[1];
+		Thread loop = new Thread(() -> {
+			try {
+				Main.main(mainArgs.toArray(new String[0]));
+			} catch (Throwable e) {
+				failure[0] = e;
+			}
+		}, "command-loop");
+		loop.start();
+
+		long[] due = new long[n];
+		long[] sent = new long[n];
+		long interval = (long) (1e9 / rate);
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			due[i] = start + i * interval;
+			long wait;
+			while ((wait = due[i] - System.nanoTime()) > 0)
+				LockSupport.parkNanos(wait);
+			sent[i] = System.nanoTime();
+			pipe.write((commands.get(i) + "\n" + MARKER + "\n").getBytes(StandardCharsets.UTF_8));
+			pipe.flush();
+		}
+		pipe.write("QUIT\n".getBytes(StandardCharsets.UTF_8));
+		pipe.close();
+		loop.join();
+		long end = System.nanoTime();
+		System.setOut(console);
+		if (failure[0] != null)
+			throw new IllegalStateException("Command loop failed", failure[0]);
+		if (completions.count < n)
+			throw new IllegalStateException("Only " + completions.count + " of " + n + " commands ended");
+
+		System.out.println(String.format(Locale.ROOT, "%d commands in %.2f s, %.0f/s offered, %.0f/s achieved",
+				n, (end - start) / 1e9, rate, n * 1e9 / (end - start)));
+		System.out.println(String.format(Locale.ROOT, "%-8s %-10s %8s %10s %10s %10s %10s %10s", "command",
+				"from", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+		for (String kind : new String[] { "all", "?", "+", "-" }) {
+			long[] fromDue = new long[n - warmup];
+			long[] fromSent = new long[n - warmup];
+			int count = 0;
+			for (int i = warmup; i < n; i++) {
+				if (kind.equals("all") || commands.get(i).startsWith(kind + " ")) {
+					fromDue[count] = completions.completed[i] - due[i];
+					fromSent[count] = completions.completed[i] - sent[i];
+					count++;
+				}
+			}
+			if (count == 0)
+				continue;
+			report(kind, "due", Arrays.copyOf(fromDue, count));
+			report(kind, "sent", Arrays.copyOf(fromSent, count));
+		}
+	}
+
+	/**
+	 * Prints the percentiles of a set of latencies.
+	 *
+	 * @param kind      Kind of command
+	 * @param from      Point the latencies are measured from
+	 * @param latencies Latencies in nanoseconds, which are sorted
+	 */
+	private static void report(String kind, String from, long[] latencies) {
+		Arrays.sort(latencies);
+		System.out.println(String.format(Locale.ROOT, "%-8s %-10s %8d %10.3f %10.3f %10.3f %10.3f %10.3f", kind,
+				from, latencies.length, percentile(latencies, 50), percentile(latencies, 90),
+				percentile(latencies, 99), percentile(latencies, 99.9), latencies[latencies.length - 1] / 1e6));
+	}
+
+	/**
+	 * Returns a percentile of sorted latencies, in milliseconds.
+	 *
+	 * @param sorted     Latencies in nanoseconds, in increasing order
+	 * @param percentile Percentile between 0 and 100
+	 * @return latency in milliseconds
+	 */
+	private static double percentile(long[] sorted, double percentile) {
+		int i = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(i, sorted.length - 1))] / 1e6;
+	}
+
+}
@@ -0,0 +1,351 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic airline networks and command workloads for capacity
+ * planning without production data.
+ *
+ * The network is grown by preferential attachment: each new airport connects
+ * to airports chosen in proportion to the connections they already have, so
+ * a few hubs end up with most of the connections and most airports are
+ * spokes, as in real hub-and-spoke networks. Airports get random positions
+ * around regional centres, and of a few hubs drawn for a new connection the
+ * nearest is taken, so spokes mostly feed nearby hubs. A connection uses a
+ * bus or train over a short distance and a plane over a long one, and its
+ * duration follows from the distance and the speed of its mode.
+ *
+ * Usage:
+ * {@code java NetworkGenerator -airports 1000 -connections 5000 -network net.txt -commands 100000 -workload commands.txt}
+ * <ul>
+ * <li>{@code -network} receives every connection as an add command,
+ * {@code + YYZ JFK 120 plane}, which {@code -load} and the command loop of
+ * {@link Main} both accept</li>
+ * <li>{@code -workload} receives {@code -commands} commands to run on top of
+ * the network, mixed by {@code -mix 80,15,5} percent of {@code ? YYZ LAX},
+ * {@code + YYZ JFK 120 plane} and {@code - YYZ JFK 120 plane}. Queried
+ * airports are as popular as they are connected, and every removal names a
+ * connection that exists at that point of the workload</li>
+ * <li>{@code -seed 1} makes the output repeatable</li>
+ * </ul>
+ *
+ * @author Minh Nguyen
+ */
+public class NetworkGenerator {
+
+	// side of the square airports are placed in, in km
+	private static final int AREA = 5000;
+	// spread of the airports around the centre of their region, in km
+	private static final int REGION = 250;
+	// hubs drawn for a connection of a new airport, the nearest is taken
+	private static final int CANDIDATES = 8;
+
+	private Random random;
+	private String[] names;
+	private int[] x, y;
+
+	// connection i runs from[i] - to[i] with weights[i] minutes by modes[i]
+	private int[] from = new int[16];
+	private int[] to = new int[16];
+	private int[] weights = new int[16];
+	private String[] modes = new String[16];
+	private int size = 0;
+	// index of the connection of every airport pair
+	private Map<Long, Integer> index = new HashMap<Long, Integer>();
+	// both airports of every connection ever made, for preferential choices
+	private int[] endpoints = new int[16];
+	private int endpointCount = 0;
+
+	/**
+	 * Generates a network.
+	 *
+	 * @param airports    Number of airports
+	 * @param connections Number of connections
+	 * @param seed        Seed of the random choices
+	 * @throws IllegalArgumentException if the airports can't all be connected
+	 *                                  by that many connections
+	 */
+	public NetworkGenerator(int airports, int connections, long seed) throws IllegalArgumentException {
+		if (airports < 2 || connections < airports - 1 || connections > (long) airports * (airports - 1) / 2)
+			throw new IllegalArgumentException(
+					airports + " airports need between " + (airports - 1) + " and every pair of connections");
+		random = new Random(seed);
+		names = new String[airports];
+		x = new int[airports];
+		y = new int[airports];
+		int regions = (int) Math.max(1, Math.sqrt(airports) / 2);
+		int[] centreX = new int[regions], centreY = new int[regions];
+		for (int r = 0; r < regions; r++) {
+			centreX[r] = random.nextInt(AREA);
+			centreY[r] = random.nextInt(AREA);
+		}
+		for (int i = 0; i < airports; i++) {
+			names[i] = code(i);
+			int r = random.nextInt(regions);
+			x[i] = (int) (centreX[r] + random.nextGaussian() * REGION);
+			y[i] = (int) (centreY[r] + random.nextGaussian() * REGION);
+		}
+
+		// every new airport connects to its share of the connections, at
+		// least one, among the airports before it
+		for (int v = 1; v < airports; v++) {
+			long share = (long) (v + 1) * connections / airports - (long) v * connections / airports;
+			int count = (int) Math.max(1, Math.min(share, v));
+			for (int made = 0, tries = 0; made < count && tries < 10 * count; tries++) {
+				if (connect(v, nearHub(v, v)))
+					made++;
+			}
+		}
+		// make up for pairs that were already taken
+		while (size < connections) {
+			int u = hub(airports), v = hub(airports);
+			if (u == v || !connect(u, v))
+				connect(random.nextInt(airports), random.nextInt(airports));
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int airports = 1000;
+		int connections = 5000;
+		int commands = 100000;
+		int[] mix = { 80, 15, 5 };
+		long seed = 1;
+		String network = null;
+		String workload = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-airports"))
+				airports = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-connections"))
+				connections = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-commands"))
+				commands = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-mix")) {
+				String[] parts = args[i + 1].split(",");
+				if (parts.length != 3)
+					throw new IllegalArgumentException("-mix must be three percentages, e.g. 80,15,5");
+				for (int j = 0; j < 3; j++)
+					mix[j] = Integer.parseInt(parts[j]);
+			} else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[i + 1]);
+			else if (args[i].equals("-network"))
+				network = args[i + 1];
+			else if (args[i].equals("-workload"))
+				workload = args[i + 1];
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		if (network == null)
+			throw new IllegalArgumentException("-network must be given");
+
+		NetworkGenerator generator = new NetworkGenerator(airports, connections, seed);
+		generator.writeNetwork(network);
+		if (workload != null)
+			generator.writeWorkload(workload, commands, mix);
+	}
+
+	/**
+	 * Writes every connection as an add command.
+	 *
+	 * @param path File to be written
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeNetwork(String path) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(path));
+		try {
+			for (int i = 0; i < size; i++) {
+				out.write(command('+', i));
+				out.newLine();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a workload of queries, additions and removals to run after the
+	 * network was loaded. The network changes as the workload is generated,
+	 * so a later workload starts from the changed network.
+	 *
+	 * @param path     File to be written
+	 * @param commands Number of commands
+	 * @param mix      Percentages of queries, additions and removals
+	 * @throws IOException              if the file can't be written
+	 * @throws IllegalArgumentException if mix has no positive percentage
+	 */
+	public void writeWorkload(String path, int commands, int[] mix) throws IOException, IllegalArgumentException {
+		int total = mix[0] + mix[1] + mix[2];
+		if (total <= 0 || mix[0] < 0 || mix[1] < 0 || mix[2] < 0)
+			throw new IllegalArgumentException("-mix must have a positive percentage");
+		BufferedWriter out = new BufferedWriter(new FileWriter(path));
+		try {
+			for (int c = 0; c < commands; c++) {
+				int kind = random.nextInt(total);
+				if (kind < mix[0]) {
+					int u = hub(names.length), v = hub(names.length);
+					out.write("? " + names[u] + " " + names[v]);
+				} else if (kind < mix[0] + mix[1] || size == 0) {
+					// a new connection, or new times for an existing one
+					int u = hub(names.length), v = hub(names.length);
+					if (u == v)
+						v = (u + 1) % names.length;
+					Integer i = index.get(pair(u, v));
+					if (i == null)
+						connect(u, v);
+					else
+						setConnection(i, u, v);
+					out.write(command('+', (i == null ? size - 1 : i)));
+				} else {
+					int i = random.nextInt(size);
+					out.write(command('-', i));
+					disconnect(i);
+				}
+				out.newLine();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the number of connections of the network.
+	 *
+	 * @return number of connections
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the code of the i-th airport: three letters, then four once
+	 * the three letter codes are used up, and so on.
+	 */
+	private static String code(int i) {
+		int length = 3;
+		for (int count = 26 * 26 * 26; i >= count; count *= 26) {
+			i -= count;
+			length++;
+		}
+		char[] code = new char[length];
+		for (int k = length - 1; k >= 0; k--) {
+			code[k] = (char) ('A' + i % 26);
+			i /= 26;
+		}
+		return new String(code);
+	}
+
+	/**
+	 * Returns an airport below {@code limit}, chosen in proportion to its
+	 * connections plus one.
+	 */
+	private int hub(int limit) {
+		// the plus one lets airports without connections be chosen too
+		for (int tries = 0; tries < 32; tries++) {
+			int pick = random.nextInt(endpointCount + limit);
+			int v = (pick < endpointCount ? endpoints[pick] : pick - endpointCount);
+			if (v < limit)
+				return v;
+		}
+		return random.nextInt(limit);
+	}
+
+	/**
+	 * Returns the nearest to v of a few airports below {@code limit} chosen
+	 * by {@link #hub(int)}.
+	 */
+	private int nearHub(int v, int limit) {
+		int best = hub(limit);
+		for (int i = 1; i < CANDIDATES; i++) {
+			int u = hub(limit);
+			if (distance(u, v) < distance(best, v))
+				best = u;
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the distance between airports u and v in km.
+	 */
+	private double distance(int u, int v) {
+		return Math.hypot(x[u] - x[v], y[u] - y[v]);
+	}
+
+	/**
+	 * Adds a connection between u and v, unless they are the same airport or
+	 * already connected.
+	 *
+	 * @return true if the connection was added
+	 */
+	private boolean connect(int u, int v) {
+		if (u == v || index.containsKey(pair(u, v)))
+			return false;
+		if (size == from.length) {
+			from = Arrays.copyOf(from, size * 2);
+			to = Arrays.copyOf(to, size * 2);
+			weights = Arrays.copyOf(weights, size * 2);
+			modes = Arrays.copyOf(modes, size * 2);
+		}
+		index.put(pair(u, v), size);
+		setConnection(size++, u, v);
+		if (endpointCount + 2 > endpoints.length)
+			endpoints = Arrays.copyOf(endpoints, endpoints.length * 2);
+		endpoints[endpointCount++] = u;
+		endpoints[endpointCount++] = v;
+		return true;
+	}
+
+	/**
+	 * Picks the mode and duration of connection i from u to v by the
+	 * distance between them.
+	 */
+	private void setConnection(int i, int u, int v) {
+		double km = distance(u, v);
+		String mode;
+		if (km < 300)
+			mode = (random.nextBoolean() ? "bus" : "train");
+		else if (km < 800)
+			mode = (random.nextBoolean() ? "train" : "plane");
+		else
+			mode = "plane";
+		// km/h, plus minutes spent at the airport for a plane
+		double speed = (mode.equals("bus") ? 70 : mode.equals("train") ? 140 : 750);
+		int overhead = (mode.equals("plane") ? 45 : 5);
+		from[i] = u;
+		to[i] = v;
+		weights[i] = overhead + (int) Math.round(km / speed * 60) + random.nextInt(15);
+		modes[i] = mode;
+	}
+
+	/**
+	 * Removes connection i by moving the last connection into its place.
+	 */
+	private void disconnect(int i) {
+		index.remove(pair(from[i], to[i]));
+		size--;
+		if (i != size) {
+			from[i] = from[size];
+			to[i] = to[size];
+			weights[i] = weights[size];
+			modes[i] = modes[size];
+			index.put(pair(from[i], to[i]), i);
+		}
+	}
+
+	/**
+	 * Returns the command adding or removing connection i.
+	 */
+	private String command(char type, int i) {
+		return type + " " + names[from[i]] + " " + names[to[i]] + " " + weights[i] + " " + modes[i];
+	}
+
+	/**
+	 * Returns the key of the unordered pair u, v.
+	 */
+	private long pair(int u, int v) {
+		return (long) Math.min(u, v) * names.length + Math.max(u, v);
+	}
+
+}
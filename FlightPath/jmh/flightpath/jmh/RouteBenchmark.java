@@ -0,0 +1,80 @@
+package flightpath.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times point to point queries of every routing engine with JMH, on a
+ * snapshot of a network generated by GraphBenchmark and preprocessed before
+ * the measurement starts.
+ *
+ * JMH needs benchmarks outside the default package, where the program lives,
+ * so the engine is reached through {@code GraphBenchmark.router}, which is
+ * looked up once during setup and returns a plain {@link IntBinaryOperator}.
+ *
+ * Usage: {@code mvn -P jmh package} in {@code FlightPath}, then
+ * {@code java -jar target/benchmarks.jar RouteBenchmark -p engine=ch}.
+ *
+ * @author Minh Nguyen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteBenchmark {
+
+	// queries cycled through, a power of two
+	private static final int QUERIES = 1024;
+
+	@Param({ "dijkstra", "bidirectional", "alt", "ch" })
+	public String engine;
+
+	@Param({ "1000", "10000" })
+	public int vertices;
+
+	@Param({ "4", "16" })
+	public int degree;
+
+	@Param({ "0", "1" })
+	public double skew;
+
+	private IntBinaryOperator router;
+	private int[] sources = new int[QUERIES];
+	private int[] destinations = new int[QUERIES];
+	private int next = 0;
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		router = (IntBinaryOperator) Class.forName("GraphBenchmark")
+				.getMethod("router", String.class, int.class, int.class, double.class, long.class)
+				.invoke(null, engine, vertices, degree, skew, 42L);
+		Random random = new Random(42);
+		for (int i = 0; i < QUERIES; i++) {
+			sources[i] = random.nextInt(vertices);
+			destinations[i] = random.nextInt(vertices);
+		}
+	}
+
+	@Benchmark
+	public int route() {
+		int i = next;
+		next = (i + 1) & (QUERIES - 1);
+		return router.applyAsInt(sources[i], destinations[i]);
+	}
+
+}
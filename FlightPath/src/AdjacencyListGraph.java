@@ -1,3 +1,8 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * @author Minh Nguyen
  */
@@ -6,6 +11,10 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 	private boolean isDirected;
 	private PositionalList<Vertex<V>> vertices;
 	private PositionalList<Edge<E>> edges;
+	// incremented by every change to the graph
+	private long epoch = 0;
+	// copied on write so changes can be reported while listeners are added
+	private List<GraphListener<V, E>> listeners = new CopyOnWriteArrayList<GraphListener<V, E>>();
 
 	/**
 	 * A vertex of an adjacency map graph representation.
@@ -15,6 +24,7 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		private V element;
 		private Position<Vertex<V>> pos;
 		private PositionalList<Edge<E>> incidentOut, incidentIn;
+		private Map<Vertex<V>, Edge<E>> indexOut, indexIn;
 
 		/**
 		 * Construct a new innerVertex instance storing {@code element}.
@@ -25,13 +35,18 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		public InnerVertex(V element, boolean isDirected) {
 			this.element = element;
 			incidentOut = new NodePositionalList<Edge<E>>();
+			indexOut = new HashMap<Vertex<V>, Edge<E>>();
 			// if graph is directed, maintain two list instances
 			// outgoing: collection of outgoing incident edges
 			// incoming: collection of incoming incident edges
-			if (isDirected)
+			// each list has an index from the opposite vertex to its edge
+			if (isDirected) {
 				incidentIn = new NodePositionalList<Edge<E>>();
-			else
+				indexIn = new HashMap<Vertex<V>, Edge<E>>();
+			} else {
 				incidentIn = incidentOut;
+				indexIn = indexOut;
+			}
 		}
 		
 		/**
@@ -89,6 +104,24 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 			return incidentIn;
 		}
 
+		/**
+		 * Get the index of outgoing edges by destination vertex
+		 * 
+		 * @return Map of destination vertex to outgoing edge
+		 */
+		public Map<Vertex<V>, Edge<E>> getOutgoingIndex() {
+			return indexOut;
+		}
+
+		/**
+		 * Get the index of incoming edges by origin vertex
+		 * 
+		 * @return Map of origin vertex to incoming edge
+		 */
+		public Map<Vertex<V>, Edge<E>> getIncomingIndex() {
+			return indexIn;
+		}
+
 		/**
 		 * Validates this Vertex belongs to current graph.
 		 * 
@@ -115,7 +148,8 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 	 */
 	private class InnerEdge<D> implements Edge<E> {
 		private E element;
-		private String modeOfTransportation;
+		// id of the mode of transportation in the ModeDictionary
+		private byte mode = ModeDictionary.NONE;
 		private Vertex<V>[] endpoints;
 		private Position<Edge<E>> pos;
 		private Position<Edge<E>> originIncident;
@@ -130,6 +164,8 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 
 			originIncident = vertexOrigin.getOutgoing().addLast(this);
 			destinationIncident = vertexDestin.getIncoming().addLast(this);
+			vertexOrigin.getOutgoingIndex().put(v, this);
+			vertexDestin.getIncomingIndex().put(u, this);
 		}
 		
 		/**
@@ -202,7 +238,16 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		 * @return String representing mode of transportation
 		 */
 		public String getModeOfTransportation() {
-			return modeOfTransportation;
+			return ModeDictionary.name(mode);
+		}
+
+		/**
+		 * Returns the dictionary id of the mode of transportation
+		 * 
+		 * @return id of mode of transportation
+		 */
+		public byte getModeId() {
+			return mode;
 		}
 		
 		/**
@@ -211,7 +256,7 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		 * @param modeOfTransportation String representing mode of transportation
 		 */
 		public void setModeOfTransportation(String modeOfTransportation) {
-			this.modeOfTransportation = modeOfTransportation;
+			this.mode = ModeDictionary.intern(modeOfTransportation);
 		}
 
 		/**
@@ -253,6 +298,62 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		edges = new NodePositionalList<Edge<E>>();
 	}
 
+	/**
+	 * Returns the mutation epoch of the graph. The epoch changes whenever a
+	 * vertex or edge is inserted, removed or replaced, so anything derived from
+	 * the graph at one epoch is stale at any other.
+	 * 
+	 * @return current epoch
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Registers a listener to be told about every later change to the graph.
+	 * 
+	 * @param listener Listener to be added
+	 */
+	public void addListener(GraphListener<V, E> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stops telling a listener about changes to the graph.
+	 * 
+	 * @param listener Listener to be removed
+	 */
+	public void removeListener(GraphListener<V, E> listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Moves the graph to its next epoch. Called once by every change to the
+	 * graph.
+	 */
+	protected void advanceEpoch() {
+		epoch++;
+	}
+
+	/**
+	 * Adds a new edge to the list of all edges of the graph.
+	 * 
+	 * @param edge Edge to be added
+	 * @return Position of edge in the list
+	 */
+	protected Position<Edge<E>> linkEdge(Edge<E> edge) {
+		return edges.addLast(edge);
+	}
+
+	/**
+	 * Removes an edge from the list of all edges of the graph.
+	 * 
+	 * @param pos Position of the edge in the list
+	 */
+	protected void unlinkEdge(Position<Edge<E>> pos) {
+		edges.remove(pos);
+	}
+
 	/**
 	 * Checks if v is a valid InnerVertex of this graph.
 	 * 
@@ -340,36 +441,9 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 	@Override
 	public Edge<E> getEdge(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
 		InnerVertex<V> origin = validateV(u);
-		InnerVertex<V> destination = validateV(v);
-
-		PositionalList<Edge<E>> incident; // incident list
-		Position<Edge<E>> incidentEdge; // node in incident list
-		InnerEdge<E> edge; // actual edge (element of incident node)
-
-		// Choose the vertex with the smaller degree
-		if (origin.getOutgoing().size() < destination.getIncoming().size())
-			incident = origin.getOutgoing();
-		else
-			incident = destination.getIncoming();
-
-		incidentEdge = incident.first();
-
-		for (int i = 0; i < incident.size(); i++) {
-			edge = validateE(incidentEdge.getElement());
-			Vertex<V>[] varr = edge.getEndpoints();
-			if ((isDirected && varr[0].equals(origin) && varr[1].equals(destination))) {
-				return edge;
-			} else if (!isDirected) {
-				if ((varr[0].equals(origin) && varr[1].equals(destination))
-						|| (varr[0].equals(destination) && varr[1].equals(origin))) {
-					return edge;
-				}
-			}
-			// get next node in incident list
-			incidentEdge = incident.after(incidentEdge);
-		}
-		// if u, v are non adjacent
-		return null;
+		validateV(v);
+		// undirected vertices share one index for both directions
+		return origin.getOutgoingIndex().get(v);
 	}
 	
 	/**
@@ -481,6 +555,9 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		InnerVertex<V> vertex = new InnerVertex<V>(element, isDirected);
 		// Add new vertex to end of vertices List
 		vertex.setPos(vertices.addLast(vertex));
+		advanceEpoch();
+		for (GraphListener<V, E> listener : listeners)
+			listener.vertexInserted(vertex);
 		return vertex;
 	}
 	
@@ -496,39 +573,87 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 	 */
 	@Override
 	public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element) throws IllegalArgumentException {
+		return insertEdge(u, v, element, -1);
+	}
+
+	/**
+	 * Inserts an edge along with a mode of transportation in that edge.
+	 * 
+	 * @param u              Vertex
+	 * @param v              Vertex
+	 * @param element        Value of edge
+	 * @param transportation String of mode of transportation
+	 * @return String representation of path
+	 * @throws IllegalArgumentException if u or v is invalid vertex, or there
+	 *                                  are too many modes of transportation
+	 */
+	public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element, String transportation)
+			throws IllegalArgumentException {
+		// fail on a full mode dictionary before the edge is inserted
+		return insertEdge(u, v, element, ModeDictionary.intern(transportation));
+	}
+
+	/**
+	 * Inserts an edge, or replaces the element of the existing edge between u
+	 * and v. The mode is stored before listeners are told, so they see the
+	 * connection as it now is; a change to the mode alone is reported as a
+	 * replacement too.
+	 * 
+	 * @param u       Vertex
+	 * @param v       Vertex
+	 * @param element Value of edge
+	 * @param mode    ModeDictionary id of the mode, or -1 to keep the mode of
+	 *                an existing edge
+	 * @return Edge containing Element
+	 * @throws IllegalArgumentException if u or v is an invalid vertex
+	 */
+	private Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element, int mode) throws IllegalArgumentException {
 		InnerVertex<V> vertexA = validateV(u);
 		InnerVertex<V> vertexB = validateV(v);
 
 		// Check if u and v already has an edge between
 		Edge<E> e = getEdge(vertexA, vertexB);
 		if (e != null) {
+			if (mode >= 0)
+				validateE(e).mode = (byte) mode;
 			replace(e, element);
 			return e;
 		}
 		// Else create edge, add to end of edges List
 		InnerEdge<E> edge = new InnerEdge<E>(u, v, element);
-		edge.setPos(edges.addLast(edge));
+		if (mode >= 0)
+			edge.mode = (byte) mode;
+		edge.setPos(linkEdge(edge));
+		advanceEpoch();
+		for (GraphListener<V, E> listener : listeners)
+			listener.edgeInserted(edge);
 
 		return edge;
 	}
+	
+	/**
+	 * Returns the mode of transportation of an edge.
+	 *
+	 * @param e Edge to be checked
+	 * @return String of mode of transportation, null if none was given
+	 * @throws IllegalArgumentException if e is an invalid Edge
+	 */
+	public String getModeOfTransportation(Edge<E> e) throws IllegalArgumentException {
+		return validateE(e).getModeOfTransportation();
+	}
 
 	/**
-	 * Inserts an edge along with a mode of transportation in that edge.
-	 * 
-	 * @param u              Vertex
-	 * @param v              Vertex
-	 * @param element        Value of edge
-	 * @param transportation String of mode of transportation
-	 * @return String representation of path
-	 * @throws IllegalArgumentException if u or v is invalid vertex
+	 * Returns the {@link ModeDictionary} id of the mode of transportation of
+	 * an edge.
+	 *
+	 * @param e Edge to be checked
+	 * @return id of the mode, {@link ModeDictionary#NONE} if none was given
+	 * @throws IllegalArgumentException if e is an invalid Edge
 	 */
-	public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element, String transportation)
-			throws IllegalArgumentException {
-		InnerEdge<E> e = validateE(insertEdge(u, v, element));
-		e.setModeOfTransportation(transportation);
-		return e;
+	public byte getModeId(Edge<E> e) throws IllegalArgumentException {
+		return validateE(e).getModeId();
 	}
-	
+
 	/**
 	 * Removes a Vertex and all of its incident edges from graph.
 	 * 
@@ -545,6 +670,9 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 			removeEdge(incidentEdge);
 		// remove vertex
 		vertices.remove(vertex.getPos());
+		advanceEpoch();
+		for (GraphListener<V, E> listener : listeners)
+			listener.vertexRemoved(vertex);
 	}
 	
 	/**
@@ -563,9 +691,14 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		// removes incident nodes from incident list of each vertex
 		vertexA.getOutgoing().remove(edge.getOriginIncident());
 		vertexB.getIncoming().remove(edge.getDestinationIncident());
+		vertexA.getOutgoingIndex().remove(vertexB);
+		vertexB.getIncomingIndex().remove(vertexA);
 
 		// remove edge
-		edges.remove(edge.getPos());
+		unlinkEdge(edge.getPos());
+		advanceEpoch();
+		for (GraphListener<V, E> listener : listeners)
+			listener.edgeRemoved(edge);
 
 	}
 	
@@ -628,6 +761,7 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		InnerVertex<V> vertex = validateV(v);
 		V old = vertex.getElement();
 		vertex.setElement(element);
+		advanceEpoch();
 		return old;
 	}
 	
@@ -644,6 +778,9 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 		InnerEdge<E> edge = validateE(e);
 		E old = edge.getElement();
 		edge.setElement(element);
+		advanceEpoch();
+		for (GraphListener<V, E> listener : listeners)
+			listener.edgeReplaced(edge, old);
 		return old;
 	}
 
@@ -656,13 +793,9 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 	 * @return String representation of the path between u, v
 	 */
 	public String pathBetweenVertex(Vertex<V> u, Vertex<V> v) {
-		InnerVertex<V> origin = validateV(u);
-		InnerVertex<V> destination = validateV(v);
-		InnerEdge<E> edge = validateE(getEdge(u, v));
-
-		return origin.getElement() + " " + destination.getElement() + " " + edge.getElement() + " "
-				+ edge.getModeOfTransportation();
-
+		validateV(u);
+		validateV(v);
+		return pathBetweenVertex(u, v, validateE(getEdge(u, v)));
 	}
 
 	/**
@@ -674,8 +807,21 @@ public class AdjacencyListGraph<V, E> implements Graph<V, E> {
 	 */
 	public String pathBetweenVertex(Edge<E> e) {
 		InnerEdge<E> edge = validateE(e);
-		Vertex<V>[] endPoints = endVertices(edge);
-		return pathBetweenVertex(endPoints[0], endPoints[1]);
+		Vertex<V>[] endPoints = edge.getEndpoints();
+		return pathBetweenVertex(endPoints[0], endPoints[1], edge);
+	}
+
+	/**
+	 * Formats the path between two vertices over an edge already looked up.
+	 * 
+	 * @param u    Origin vertex
+	 * @param v    Destination vertex
+	 * @param edge Edge between u and v
+	 * @return String representation of the path between u, v
+	 */
+	private String pathBetweenVertex(Vertex<V> u, Vertex<V> v, InnerEdge<E> edge) {
+		return u.getElement() + " " + v.getElement() + " " + edge.getElement() + " "
+				+ edge.getModeOfTransportation();
 	}
 	/**
 	 * String representation of Graph
@@ -0,0 +1,289 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interned dictionary of the airports of a graph, keeping each airport code
+ * mapped to its vertex as the graph changes.
+ *
+ * Codes of up to {@link #MAX_CODE_LENGTH} upper case letters and digits
+ * (IATA and ICAO codes such as YYZ or CYYZ) are packed into an int, six bits
+ * per character, and looked up in an open addressing table of ints, so a
+ * lookup hashes and compares one int instead of a String. Each airport also
+ * gets a dense id, reused once the airport is removed. Any other name is
+ * kept in an ordinary map.
+ *
+ * The dictionary listens to the graph, so airports inserted or removed
+ * through the graph are added or dropped automatically. Lookups must not run
+ * concurrently with changes to the vertices of the graph.
+ *
+ * @author Minh Nguyen
+ */
+public class AirportDictionary implements GraphListener<String, Integer> {
+
+	/** Longest code that is packed into an int. */
+	public static final int MAX_CODE_LENGTH = 5;
+
+	// packed code of each slot, 0 if the slot is empty
+	private int[] keys = new int[1024];
+	// dense id of the airport in each slot
+	private int[] ids = new int[1024];
+	private int packedCount = 0;
+	// names that are not codes, e.g. lower case or long names
+	private Map<String, Integer> others = new HashMap<String, Integer>();
+	@SuppressWarnings("unchecked")
+	private Vertex<String>[] vertices = (Vertex<String>[]) new Vertex[512];
+	// ids of removed airports, reused before new ones are handed out
+	private int[] free = new int[16];
+	private int freeCount = 0;
+	private int nextId = 0;
+
+	/**
+	 * Constructs the dictionary of g, holding every airport already in g, and
+	 * registers it to follow later changes.
+	 *
+	 * @param g Graph of airports
+	 */
+	public AirportDictionary(AdjacencyListGraph<String, Integer> g) {
+		for (Vertex<String> v : g.vertices())
+			vertexInserted(v);
+		g.addListener(this);
+	}
+
+	/**
+	 * Packs an airport code into an int.
+	 *
+	 * @param code Airport code
+	 * @return packed code, or -1 if code is not 1 to MAX_CODE_LENGTH upper
+	 *         case letters and digits
+	 */
+	public static int encode(String code) {
+		int length = code.length();
+		if (length == 0 || length > MAX_CODE_LENGTH)
+			return -1;
+		int packed = 0;
+		for (int i = 0; i < length; i++) {
+			int c = digit(code.charAt(i));
+			if (c < 0)
+				return -1;
+			packed = (packed << 6) | c;
+		}
+		return packed;
+	}
+
+	/**
+	 * Unpacks a code packed by {@link #encode(String)}.
+	 *
+	 * @param packed Packed code
+	 * @return Airport code
+	 * @throws IllegalArgumentException if packed is not a packed code
+	 */
+	public static String decode(int packed) throws IllegalArgumentException {
+		if (packed <= 0)
+			throw new IllegalArgumentException("Not a packed airport code");
+		char[] code = new char[MAX_CODE_LENGTH];
+		int start = MAX_CODE_LENGTH;
+		for (; packed != 0; packed >>>= 6) {
+			int c = packed & 63;
+			if (c == 0 || c > 36)
+				throw new IllegalArgumentException("Not a packed airport code");
+			code[--start] = (char) (c <= 10 ? '0' + c - 1 : 'A' + c - 11);
+		}
+		return new String(code, start, MAX_CODE_LENGTH - start);
+	}
+
+	/**
+	 * Returns the vertex of an airport.
+	 *
+	 * @param code Name of the airport
+	 * @return Vertex of the airport, or null if there is none
+	 */
+	public Vertex<String> findVertex(String code) {
+		int id = id(code);
+		return (id < 0 ? null : vertices[id]);
+	}
+
+	/**
+	 * Returns the vertex of an airport by its packed code.
+	 *
+	 * @param packed Code packed by {@link #encode(String)}
+	 * @return Vertex of the airport, or null if there is none
+	 */
+	public Vertex<String> findVertex(int packed) {
+		int slot = slotOf(packed);
+		return (keys[slot] == 0 ? null : vertices[ids[slot]]);
+	}
+
+	/**
+	 * Returns the dense id of an airport. Ids range from 0 to below
+	 * {@link #capacity()}, and the id of a removed airport is given to the
+	 * next airport inserted.
+	 *
+	 * @param code Name of the airport
+	 * @return id of the airport, or -1 if there is none
+	 */
+	public int id(String code) {
+		int packed = encode(code);
+		if (packed < 0) {
+			Integer id = others.get(code);
+			return (id == null ? -1 : id);
+		}
+		int slot = slotOf(packed);
+		return (keys[slot] == 0 ? -1 : ids[slot]);
+	}
+
+	/**
+	 * Returns the vertex with dense id {@code id}.
+	 *
+	 * @param id Dense id of an airport
+	 * @return Vertex of the airport, or null if the id is unused
+	 */
+	public Vertex<String> vertex(int id) {
+		return vertices[id];
+	}
+
+	/**
+	 * Returns the number of airports in the dictionary.
+	 *
+	 * @return number of airports
+	 */
+	public int size() {
+		return packedCount + others.size();
+	}
+
+	/**
+	 * Returns one more than the largest id handed out so far.
+	 *
+	 * @return bound on the ids
+	 */
+	public int capacity() {
+		return nextId;
+	}
+
+	@Override
+	public void vertexInserted(Vertex<String> v) {
+		String code = v.getElement();
+		int id = id(code);
+		if (id >= 0) {
+			// a second vertex of the same name replaces the first, like a map
+			vertices[id] = v;
+			return;
+		}
+		id = (freeCount > 0 ? free[--freeCount] : nextId++);
+		if (id == vertices.length)
+			vertices = Arrays.copyOf(vertices, id * 2);
+		vertices[id] = v;
+		int packed = encode(code);
+		if (packed < 0) {
+			others.put(code, id);
+			return;
+		}
+		int slot = slotOf(packed);
+		keys[slot] = packed;
+		ids[slot] = id;
+		if (++packedCount * 2 > keys.length)
+			grow();
+	}
+
+	@Override
+	public void vertexRemoved(Vertex<String> v) {
+		String code = v.getElement();
+		int id = id(code);
+		if (id < 0 || vertices[id] != v)
+			return;
+		vertices[id] = null;
+		if (freeCount == free.length)
+			free = Arrays.copyOf(free, freeCount * 2);
+		free[freeCount++] = id;
+		int packed = encode(code);
+		if (packed < 0)
+			others.remove(code);
+		else
+			delete(slotOf(packed));
+	}
+
+	@Override
+	public void edgeInserted(Edge<Integer> e) {
+		// only airports are held
+	}
+
+	@Override
+	public void edgeRemoved(Edge<Integer> e) {
+	}
+
+	@Override
+	public void edgeReplaced(Edge<Integer> e, Integer old) {
+	}
+
+	/**
+	 * Returns the six bit value of a code character.
+	 *
+	 * @param c Character of a code
+	 * @return 1 to 10 for a digit, 11 to 36 for an upper case letter, -1
+	 *         otherwise
+	 */
+	private static int digit(char c) {
+		if (c >= '0' && c <= '9')
+			return c - '0' + 1;
+		if (c >= 'A' && c <= 'Z')
+			return c - 'A' + 11;
+		return -1;
+	}
+
+	/**
+	 * Returns the home slot of a packed code.
+	 */
+	private int home(int packed) {
+		int h = packed * 0x9e3779b9;
+		return (h ^ (h >>> 16)) & (keys.length - 1);
+	}
+
+	/**
+	 * Returns the slot holding a packed code, or the empty slot ending its
+	 * probe sequence.
+	 */
+	private int slotOf(int packed) {
+		int mask = keys.length - 1;
+		int slot = home(packed);
+		while (keys[slot] != 0 && keys[slot] != packed)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Empties a slot, shifting back later keys of the same probe sequence so
+	 * no lookup stops early at the hole.
+	 */
+	private void delete(int slot) {
+		int mask = keys.length - 1;
+		keys[slot] = 0;
+		packedCount--;
+		for (int next = (slot + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+			// move the key back unless its home lies after the hole
+			if (((next - home(keys[next])) & mask) >= ((next - slot) & mask)) {
+				keys[slot] = keys[next];
+				ids[slot] = ids[next];
+				keys[next] = 0;
+				slot = next;
+			}
+		}
+	}
+
+	/**
+	 * Doubles the table and rehashes every key.
+	 */
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldIds = ids;
+		keys = new int[oldKeys.length * 2];
+		ids = new int[keys.length];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = slotOf(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				ids[slot] = oldIds[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+/**
+ * A* search over a {@link CompactGraph} guided by the landmark lower bounds
+ * of a {@link LandmarkIndex}. The bounds are consistent, so a vertex is final
+ * when it leaves the queue and the search stops as soon as the destination
+ * does; vertices pointing away from the destination get large keys and are
+ * usually never settled.
+ *
+ * An instance is not thread-safe.
+ *
+ * @author Minh Nguyen
+ */
+public class AltSearch<V> implements RoutingEngine<V> {
+
+	private CompactGraph<V> g;
+	private LandmarkIndex<V> landmarks;
+	private int[] dist;
+	private int[] parent;
+	private int[] stamp;
+	private int generation = 0;
+	private int settled = 0;
+	private IndexedMinHeap pq;
+
+	/**
+	 * Constructs an A* search over the snapshot of {@code landmarks}.
+	 *
+	 * @param landmarks Landmark tables of the snapshot to be searched
+	 */
+	public AltSearch(LandmarkIndex<V> landmarks) {
+		this.landmarks = landmarks;
+		g = landmarks.getGraph();
+		int n = g.numVertices();
+		dist = new int[n];
+		parent = new int[n];
+		stamp = new int[n];
+		pq = new IndexedMinHeap(n);
+	}
+
+	/**
+	 * Returns the snapshot this search runs on.
+	 *
+	 * @return Snapshot of the search
+	 */
+	@Override
+	public CompactGraph<V> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Returns the landmark tables guiding this search.
+	 *
+	 * @return Landmark index
+	 */
+	public LandmarkIndex<V> getLandmarks() {
+		return landmarks;
+	}
+
+	/**
+	 * Returns the number of vertices settled by the last search.
+	 *
+	 * @return number of settled vertices
+	 */
+	public int settled() {
+		return settled;
+	}
+
+	/**
+	 * Returns the fastest route from src to dest, or null if dest can't be
+	 * reached.
+	 *
+	 * @param src  Dense id of starting vertex
+	 * @param dest Dense id of destination vertex
+	 * @return Route from src to dest, or null
+	 */
+	@Override
+	public Route<V> route(int src, int dest) {
+		return route(src, dest, ModeDictionary.ALL);
+	}
+
+	/**
+	 * Returns the fastest route from src to dest over the allowed modes, or
+	 * null if dest can't be reached. The landmark bounds hold for the full
+	 * snapshot, so they are still lower bounds when modes are left out.
+	 *
+	 * @param src   Dense id of starting vertex
+	 * @param dest  Dense id of destination vertex
+	 * @param modes Mask of allowed modes
+	 * @return Route from src to dest, or null
+	 */
+	@Override
+	public Route<V> route(int src, int dest, long modes) {
+		boolean filtered = ((modes & g.modeMask()) != g.modeMask());
+		if (++generation == 0) {
+			// stamps wrapped around, forget every old entry
+			for (int i = 0; i < stamp.length; i++)
+				stamp[i] = 0;
+			generation = 1;
+		}
+		pq.clear();
+		settled = 0;
+		stamp[src] = generation;
+		dist[src] = 0;
+		parent[src] = -1;
+		pq.push(src, landmarks.lowerBound(src, dest));
+
+		while (!pq.isEmpty()) {
+			int u = pq.poll();
+			settled++;
+			if (u == dest)
+				return Route.unwind(g, src, dest, dist[dest], parent);
+			int du = dist[u];
+
+			for (int slot = g.outStart(u), end = g.outEnd(u); slot < end; slot++) {
+				if (filtered && !ModeDictionary.allows(modes, g.modeId(slot)))
+					continue;
+				int v = g.target(slot);
+				int dv = du + g.weight(slot);
+				if (stamp[v] != generation || dv < dist[v]) {
+					stamp[v] = generation;
+					dist[v] = dv;
+					parent[v] = slot;
+					pq.push(v, dv + landmarks.lowerBound(v, dest));
+				}
+			}
+		}
+		return null;
+	}
+
+}
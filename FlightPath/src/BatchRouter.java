@@ -0,0 +1,138 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers many route queries at once by spreading them over a
+ * {@link ForkJoinPool}. The {@link CompactGraph} snapshot is never modified
+ * after construction, so every worker can read it without locking.
+ *
+ * Queries are grouped by origin: a lone query from an origin stops as soon as
+ * its destination is settled, while an origin with several destinations is
+ * searched once and all of them are read from the same tree. Each running
+ * task borrows a {@link DijkstraSearch} from a shared pool of scratch arrays
+ * and returns it afterwards, so there are never more scratch arrays than
+ * tasks running at the same time. Results are returned in input order.
+ *
+ * @author Minh Nguyen
+ */
+public class BatchRouter<V> {
+
+	// origin groups handled by one task without splitting further
+	private static final int LEAF_GROUPS = 16;
+
+	private CompactGraph<V> g;
+	private ForkJoinPool pool;
+	private ConcurrentLinkedQueue<DijkstraSearch<V>> scratch = new ConcurrentLinkedQueue<DijkstraSearch<V>>();
+
+	/**
+	 * Constructs a batch router over a snapshot.
+	 *
+	 * @param g    Snapshot to be routed on
+	 * @param pool Pool running the queries
+	 */
+	public BatchRouter(CompactGraph<V> g, ForkJoinPool pool) {
+		this.g = g;
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the snapshot this router runs on.
+	 *
+	 * @return Snapshot of the router
+	 */
+	public CompactGraph<V> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Returns the fastest route of every query, where query i goes from
+	 * origins[i] to destinations[i]. A query whose destination can't be
+	 * reached has a null route.
+	 *
+	 * @param origins      Dense ids of starting vertices
+	 * @param destinations Dense ids of destination vertices
+	 * @return Routes in the order of the queries
+	 * @throws IllegalArgumentException if the arrays differ in length
+	 */
+	@SuppressWarnings("unchecked")
+	public Route<V>[] route(int[] origins, int[] destinations) throws IllegalArgumentException {
+		if (origins.length != destinations.length)
+			throw new IllegalArgumentException("Every origin needs a destination");
+		int count = origins.length;
+		Route<V>[] results = (Route<V>[]) new Route[count];
+		if (count == 0)
+			return results;
+
+		// sort query indices by origin, packing origin and index into a long
+		long[] order = new long[count];
+		for (int i = 0; i < count; i++)
+			order[i] = ((long) origins[i] << 32) | i;
+		Arrays.sort(order);
+		int[] queries = new int[count];
+		int[] groups = new int[count + 1];
+		int groupCount = 0;
+		for (int i = 0; i < count; i++) {
+			queries[i] = (int) order[i];
+			if (i == 0 || (order[i] >>> 32) != (order[i - 1] >>> 32))
+				groups[groupCount++] = i;
+		}
+		groups[groupCount] = count;
+
+		pool.invoke(new Task(origins, destinations, queries, groups, 0, groupCount, results));
+		return results;
+	}
+
+	/**
+	 * Routes the queries of origin groups [from, to).
+	 */
+	private class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private int[] origins, destinations, queries, groups;
+		private int from, to;
+		private Route<V>[] results;
+
+		private Task(int[] origins, int[] destinations, int[] queries, int[] groups, int from, int to,
+				Route<V>[] results) {
+			this.origins = origins;
+			this.destinations = destinations;
+			this.queries = queries;
+			this.groups = groups;
+			this.from = from;
+			this.to = to;
+			this.results = results;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > LEAF_GROUPS) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Task(origins, destinations, queries, groups, from, mid, results),
+						new Task(origins, destinations, queries, groups, mid, to, results));
+				return;
+			}
+
+			DijkstraSearch<V> search = scratch.poll();
+			if (search == null)
+				search = new DijkstraSearch<V>(g);
+			for (int group = from; group < to; group++) {
+				int first = groups[group], end = groups[group + 1];
+				int src = origins[queries[first]];
+				if (end - first == 1) {
+					int q = queries[first];
+					results[q] = search.route(src, destinations[q]);
+				} else {
+					search.search(src);
+					for (int i = first; i < end; i++) {
+						int q = queries[i];
+						results[q] = search.routeTo(destinations[q]);
+					}
+				}
+			}
+			scratch.add(search);
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Bidirectional Dijkstra over a {@link CompactGraph}. One search grows forward
+ * from the origin over outgoing connections and another grows backward from
+ * the destination over incoming connections, always advancing the side whose
+ * next vertex is closer. Every connection relaxed between the two searches is
+ * a candidate meeting point; once the two queue minimums add up to at least
+ * the best candidate, no shorter route can exist and the search stops.
+ *
+ * Works for both directed and undirected snapshots, since an undirected edge
+ * appears in both the outgoing and incoming ranges of its endpoints. An
+ * instance is not thread-safe.
+ *
+ * @author Minh Nguyen
+ */
+public class BidirectionalDijkstra<V> implements RoutingEngine<V> {
+
+	private CompactGraph<V> g;
+	private int generation = 0;
+
+	// forward search: parent slot enters the vertex
+	private int[] distF, parentF, stampF;
+	private IndexedMinHeap pqF;
+
+	// backward search: parent slot leaves the vertex towards dest
+	private int[] distB, parentB, stampB;
+	private IndexedMinHeap pqB;
+
+	/**
+	 * Constructs a bidirectional search over {@code g}.
+	 *
+	 * @param g Snapshot to be searched
+	 */
+	public BidirectionalDijkstra(CompactGraph<V> g) {
+		this.g = g;
+		int n = g.numVertices();
+		distF = new int[n];
+		parentF = new int[n];
+		stampF = new int[n];
+		pqF = new IndexedMinHeap(n);
+		distB = new int[n];
+		parentB = new int[n];
+		stampB = new int[n];
+		pqB = new IndexedMinHeap(n);
+	}
+
+	/**
+	 * Returns the snapshot this search runs on.
+	 *
+	 * @return Snapshot of the search
+	 */
+	@Override
+	public CompactGraph<V> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Returns the fastest route from src to dest, or null if dest can't be
+	 * reached.
+	 *
+	 * @param src  Dense id of starting vertex
+	 * @param dest Dense id of destination vertex
+	 * @return Route from src to dest, or null
+	 */
+	@Override
+	public Route<V> route(int src, int dest) {
+		return route(src, dest, ModeDictionary.ALL);
+	}
+
+	/**
+	 * Returns the fastest route from src to dest over the allowed modes, or
+	 * null if dest can't be reached.
+	 *
+	 * @param src   Dense id of starting vertex
+	 * @param dest  Dense id of destination vertex
+	 * @param modes Mask of allowed modes
+	 * @return Route from src to dest, or null
+	 */
+	@Override
+	public Route<V> route(int src, int dest, long modes) {
+		boolean filtered = ((modes & g.modeMask()) != g.modeMask());
+		if (++generation == 0) {
+			// stamps wrapped around, forget every old entry
+			for (int i = 0; i < stampF.length; i++)
+				stampF[i] = stampB[i] = 0;
+			generation = 1;
+		}
+		pqF.clear();
+		pqB.clear();
+		stampF[src] = generation;
+		distF[src] = 0;
+		parentF[src] = -1;
+		pqF.push(src, 0);
+		stampB[dest] = generation;
+		distB[dest] = 0;
+		parentB[dest] = -1;
+		pqB.push(dest, 0);
+
+		// best route seen so far and the vertex where its two halves meet
+		long best = (src == dest ? 0 : Long.MAX_VALUE);
+		int meet = (src == dest ? src : -1);
+
+		while (!pqF.isEmpty() && !pqB.isEmpty()) {
+			// stopping rule: nothing left in either queue can beat best
+			if ((long) pqF.minKey() + pqB.minKey() >= best)
+				break;
+
+			if (pqF.minKey() <= pqB.minKey()) {
+				int u = pqF.poll();
+				int du = distF[u];
+				for (int slot = g.outStart(u), end = g.outEnd(u); slot < end; slot++) {
+					if (filtered && !ModeDictionary.allows(modes, g.modeId(slot)))
+						continue;
+					int v = g.target(slot);
+					int dv = du + g.weight(slot);
+					if (stampF[v] != generation || dv < distF[v]) {
+						stampF[v] = generation;
+						distF[v] = dv;
+						parentF[v] = slot;
+						pqF.push(v, dv);
+					}
+					if (stampB[v] == generation && (long) distF[v] + distB[v] < best) {
+						best = (long) distF[v] + distB[v];
+						meet = v;
+					}
+				}
+			} else {
+				int w = pqB.poll();
+				int dw = distB[w];
+				for (int j = g.inStart(w), end = g.inEnd(w); j < end; j++) {
+					if (filtered && !ModeDictionary.allows(modes, g.modeId(g.inSlot(j))))
+						continue;
+					int u = g.inSource(j);
+					int du = dw + g.inWeight(j);
+					if (stampB[u] != generation || du < distB[u]) {
+						stampB[u] = generation;
+						distB[u] = du;
+						parentB[u] = g.inSlot(j);
+						pqB.push(u, du);
+					}
+					if (stampF[u] == generation && (long) distF[u] + distB[u] < best) {
+						best = (long) distF[u] + distB[u];
+						meet = u;
+					}
+				}
+			}
+		}
+
+		if (meet < 0)
+			return null;
+		return join(src, dest, meet, (int) best);
+	}
+
+	/**
+	 * Joins the forward half of the route ending at meet with the backward
+	 * half starting at meet.
+	 *
+	 * @param src   Dense id of starting vertex
+	 * @param dest  Dense id of destination vertex
+	 * @param meet  Dense id of the meeting vertex
+	 * @param total Total weight of the route
+	 * @return Route from src to dest
+	 */
+	private Route<V> join(int src, int dest, int meet, int total) {
+		int forward = 0;
+		for (int v = meet; v != src; v = g.tail(parentF[v]))
+			forward++;
+		int backward = 0;
+		for (int v = meet; v != dest; v = g.target(parentB[v]))
+			backward++;
+
+		int[] slots = new int[forward + backward];
+		int i = forward;
+		for (int v = meet; v != src; v = g.tail(parentF[v]))
+			slots[--i] = parentF[v];
+		i = forward;
+		for (int v = meet; v != dest; v = g.target(parentB[v]))
+			slots[i++] = parentB[v];
+		return new Route<V>(g, total, slots);
+	}
+
+}
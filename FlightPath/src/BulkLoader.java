@@ -0,0 +1,259 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Loads a large file of connections (lines in the format YYZ JFK 120 plane,
+ * optionally prefixed by "+ " like the add command) into a graph in one pass.
+ *
+ * The file is read through a large buffer and tokenized as bytes, so no line
+ * or field strings are created. Airport names and modes are deduplicated by
+ * a table keyed on the bytes of the name: a name seen before costs one
+ * lookup, and only a new airport creates a String and a Vertex.
+ *
+ * @author Minh Nguyen
+ */
+public class BulkLoader {
+
+	// bytes read from the file at a time; no line may be longer
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * An open addressing hash table from byte strings to dense ids.
+	 */
+	private static class NameTable {
+		private byte[][] keys = new byte[1024][];
+		private int[] ids = new int[1024];
+		private String[] names = new String[512];
+		private int size = 0;
+
+		/**
+		 * Returns the id of the name in buf[from..to), adding it if new.
+		 *
+		 * @param buf  Buffer holding the name
+		 * @param from First byte of the name
+		 * @param to   One past the last byte of the name
+		 * @return id of the name
+		 */
+		private int add(byte[] buf, int from, int to) {
+			int hash = 0x811c9dc5;
+			for (int i = from; i < to; i++)
+				hash = (hash ^ buf[i]) * 0x01000193;
+			int mask = keys.length - 1;
+			for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+				byte[] key = keys[slot];
+				if (key == null) {
+					key = new byte[to - from];
+					System.arraycopy(buf, from, key, 0, key.length);
+					keys[slot] = key;
+					ids[slot] = size;
+					if (size == names.length)
+						names = Arrays.copyOf(names, size * 2);
+					names[size] = new String(key, StandardCharsets.UTF_8);
+					if (++size * 2 > keys.length)
+						grow();
+					return size - 1;
+				}
+				if (matches(key, buf, from, to))
+					return ids[slot];
+			}
+		}
+
+		/**
+		 * Returns the name with id {@code id}.
+		 *
+		 * @param id Id of the name
+		 * @return name
+		 */
+		private String name(int id) {
+			return names[id];
+		}
+
+		/**
+		 * Returns true if key holds the same bytes as buf[from..to).
+		 */
+		private static boolean matches(byte[] key, byte[] buf, int from, int to) {
+			if (key.length != to - from)
+				return false;
+			for (int i = 0; i < key.length; i++)
+				if (key[i] != buf[from + i])
+					return false;
+			return true;
+		}
+
+		/**
+		 * Doubles the table and rehashes every key.
+		 */
+		private void grow() {
+			byte[][] oldKeys = keys;
+			int[] oldIds = ids;
+			keys = new byte[oldKeys.length * 2][];
+			ids = new int[keys.length];
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				byte[] key = oldKeys[i];
+				if (key == null)
+					continue;
+				int hash = 0x811c9dc5;
+				for (byte b : key)
+					hash = (hash ^ b) * 0x01000193;
+				int slot = hash & mask;
+				while (keys[slot] != null)
+					slot = (slot + 1) & mask;
+				keys[slot] = key;
+				ids[slot] = oldIds[i];
+			}
+		}
+	}
+
+	private AdjacencyListGraph<String, Integer> g;
+	private AirportDictionary airports;
+	private NameTable airportNames = new NameTable();
+	private NameTable modeNames = new NameTable();
+	@SuppressWarnings("unchecked")
+	private Vertex<String>[] vertices = (Vertex<String>[]) new Vertex[512];
+	// bounds of the fields of the line being parsed
+	private int[] starts = new int[4];
+	private int[] ends = new int[4];
+
+	/**
+	 * Constructs a loader adding to g. Airports already in g are found
+	 * through {@code airports} and reused.
+	 *
+	 * @param g        Graph to be loaded into
+	 * @param airports Dictionary of the airports of g
+	 */
+	public BulkLoader(AdjacencyListGraph<String, Integer> g, AirportDictionary airports) {
+		this.g = g;
+		this.airports = airports;
+	}
+
+	/**
+	 * Loads every connection of a file into the graph. Blank lines are
+	 * skipped.
+	 *
+	 * @param path Path of the file
+	 * @return number of connections loaded
+	 * @throws IOException              if the file can't be read
+	 * @throws IllegalArgumentException if a line is not a connection
+	 */
+	public int load(String path) throws IOException, IllegalArgumentException {
+		FileInputStream in = new FileInputStream(path);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			byte[] buf = buffer.array();
+			int count = 0;
+			int line = 0;
+			int filled = 0;
+			boolean eof = false;
+			while (!eof || filled > 0) {
+				if (!eof) {
+					buffer.position(filled);
+					eof = (channel.read(buffer) < 0);
+					filled = buffer.position();
+				}
+				// parse every complete line; at the end of the file the rest is one
+				int start = 0;
+				while (start < filled) {
+					int end = start;
+					while (end < filled && buf[end] != '\n')
+						end++;
+					if (end == filled && !eof)
+						break;
+					line++;
+					if (parse(buf, start, end, line))
+						count++;
+					start = end + 1;
+				}
+				if (start == 0 && filled == buf.length)
+					throw new IllegalArgumentException("Line " + (line + 1) + " is too long");
+				// move the unfinished line to the front of the buffer
+				int rest = Math.max(filled - start, 0);
+				System.arraycopy(buf, start, buf, 0, rest);
+				filled = rest;
+			}
+			return count;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Adds the connection in buf[from..to) to the graph.
+	 *
+	 * @param buf  Buffer holding the line
+	 * @param from First byte of the line
+	 * @param to   End of the line, not counting the newline
+	 * @param line Number of the line, for error messages
+	 * @return true if a connection was added, false for a blank line
+	 * @throws IllegalArgumentException if the line is not a connection
+	 */
+	private boolean parse(byte[] buf, int from, int to, int line) throws IllegalArgumentException {
+		if (to > from && buf[to - 1] == '\r')
+			to--;
+		if (from == to)
+			return false;
+		if (to - from > 2 && buf[from] == '+' && buf[from + 1] == ' ')
+			from += 2;
+
+		// split into origin, destination, weight and mode
+		int field = 0;
+		int start = from;
+		for (int i = from; i <= to; i++) {
+			if (i == to || buf[i] == ' ') {
+				if (field == 4)
+					throw new IllegalArgumentException("Line " + line + " has too many fields");
+				starts[field] = start;
+				ends[field] = i;
+				field++;
+				start = i + 1;
+			}
+		}
+		if (field != 4)
+			throw new IllegalArgumentException("Line " + line + " must be in the format YYZ JFK 120 plane");
+
+		int weight = 0;
+		if (starts[2] == ends[2])
+			throw new IllegalArgumentException("Line " + line + " has no duration");
+		for (int i = starts[2]; i < ends[2]; i++) {
+			int digit = buf[i] - '0';
+			if (digit < 0 || digit > 9 || weight > (Integer.MAX_VALUE - digit) / 10)
+				throw new IllegalArgumentException("Line " + line + " has an invalid duration");
+			weight = weight * 10 + digit;
+		}
+
+		// a full mode dictionary fails the line before any airport is added
+		String mode = modeNames.name(modeNames.add(buf, starts[3], ends[3]));
+		ModeDictionary.intern(mode);
+		Vertex<String> origin = airport(airportNames.add(buf, starts[0], ends[0]));
+		Vertex<String> destination = airport(airportNames.add(buf, starts[1], ends[1]));
+		g.insertEdge(origin, destination, weight, mode);
+		return true;
+	}
+
+	/**
+	 * Returns the vertex of the airport with id {@code id}, inserting it
+	 * into the graph the first time it is seen.
+	 *
+	 * @param id Id of the airport name
+	 * @return Vertex of the airport
+	 */
+	private Vertex<String> airport(int id) {
+		if (id == vertices.length)
+			vertices = Arrays.copyOf(vertices, id * 2);
+		Vertex<String> v = vertices[id];
+		if (v == null) {
+			String name = airportNames.name(id);
+			v = airports.findVertex(name);
+			if (v == null)
+				v = g.insertVertex(name);
+			vertices[id] = v;
+		}
+		return v;
+	}
+
+}
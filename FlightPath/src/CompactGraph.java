@@ -0,0 +1,445 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A frozen, compressed sparse row (CSR) snapshot of a graph with integer
+ * weights. Vertices are renumbered to dense ids {@code 0..n-1} and the
+ * connections leaving (and entering) each vertex are stored contiguously in
+ * flat {@code int} arrays, so routing code can relax edges without walking the
+ * linked incidence lists of the source graph.
+ *
+ * Every connection is stored in a numbered slot of the outgoing arrays. For an
+ * undirected graph each edge occupies two slots, one from each endpoint.
+ *
+ * Vertex elements and modes of transportation are copied too, so a snapshot
+ * can name its airports and describe its connections after the source graph
+ * has moved on.
+ *
+ * Weights are primitive ints, so the snapshot is also an
+ * {@link IntWeightedGraph} that searches can run on without boxing.
+ *
+ * @author Minh Nguyen
+ */
+public class CompactGraph<V> implements IntWeightedGraph {
+
+	private Vertex<V>[] vertices;
+	private V[] elements;
+	private Map<Vertex<V>, Integer> ids;
+	private Map<V, Integer> names;
+
+	// outgoing connections of u are the slots outOffsets[u] .. outOffsets[u+1]-1
+	private int[] outOffsets;
+	private int[] targets;
+	private int[] weights;
+	private int[] tails;
+	private Edge<Integer>[] edges;
+	// ModeDictionary id of the mode of every slot
+	private byte[] modes;
+	// modes used by any slot
+	private long modeMask;
+	// true if the slot runs against the stored direction of its edge
+	private boolean[] reversed;
+	// forward slot of every edge, in the order the edges were inserted
+	private int[] edgeSlots;
+
+	// incoming connections of v are inOffsets[v] .. inOffsets[v+1]-1
+	private int[] inOffsets;
+	private int[] inSources;
+	private int[] inWeights;
+	private int[] inSlots;
+
+	/**
+	 * Constructs a snapshot of the current state of {@code g}. Later changes
+	 * to {@code g} are not reflected in the snapshot.
+	 *
+	 * @param g Graph to be copied
+	 */
+	@SuppressWarnings("unchecked")
+	public CompactGraph(Graph<V, Integer> g) {
+		int n = g.numVertices();
+		vertices = (Vertex<V>[]) new Vertex[n];
+		elements = (V[]) new Object[n];
+		ids = new HashMap<Vertex<V>, Integer>(n * 2);
+		outOffsets = new int[n + 1];
+
+		// number the vertices and size each adjacency range
+		int id = 0;
+		for (Vertex<V> v : g.vertices()) {
+			vertices[id] = v;
+			elements[id] = v.getElement();
+			ids.put(v, id);
+			outOffsets[id + 1] = outOffsets[id] + g.OutDegree(v);
+			id++;
+		}
+
+		int slots = outOffsets[n];
+		targets = new int[slots];
+		weights = new int[slots];
+		edges = (Edge<Integer>[]) new Edge[slots];
+		modes = new byte[slots];
+		reversed = new boolean[slots];
+		edgeSlots = new int[g.numEdges()];
+
+		// fill outgoing slots edge by edge, in the order the edges were
+		// inserted, which is also the order of every incidence list
+		int[] next = new int[n];
+		for (int u = 0; u < n; u++)
+			next[u] = outOffsets[u];
+		int k = 0;
+		for (Edge<Integer> e : g.edges()) {
+			Vertex<V>[] endpoints = g.endVertices(e);
+			int u = ids.get(endpoints[0]);
+			int v = ids.get(endpoints[1]);
+			byte mode = ModeDictionary.NONE;
+			if (g instanceof AdjacencyListGraph)
+				mode = ((AdjacencyListGraph<V, Integer>) g).getModeId(e);
+			int slot = next[u]++;
+			edgeSlots[k++] = slot;
+			targets[slot] = v;
+			weights[slot] = e.getElement();
+			edges[slot] = e;
+			modes[slot] = mode;
+			if (!g.isDirected(e)) {
+				// the same edge leaves its destination too
+				slot = next[v]++;
+				targets[slot] = u;
+				weights[slot] = e.getElement();
+				edges[slot] = e;
+				modes[slot] = mode;
+				reversed[slot] = (u != v);
+			}
+		}
+		index();
+	}
+
+	/**
+	 * Constructs a snapshot from its outgoing arrays, as stored by
+	 * {@link SnapshotFile}. The snapshot has no source graph:
+	 * {@link #vertex(int)} and {@link #edge(int)} return null and
+	 * {@link #indexOf(Vertex)} returns -1.
+	 *
+	 * @param elements   Element of every vertex, by dense id
+	 * @param outOffsets Start of the slots of every vertex, plus the end
+	 * @param targets    Target vertex of every slot
+	 * @param weights    Weight of every slot
+	 * @param modes      {@link ModeDictionary} id of the mode of every slot
+	 * @param reversed   True for the slots running against their edge
+	 * @param edgeSlots  Forward slot of every edge, in insertion order
+	 * @throws IllegalArgumentException if the arrays have mismatched lengths
+	 */
+	public CompactGraph(V[] elements, int[] outOffsets, int[] targets, int[] weights, byte[] modes,
+			boolean[] reversed, int[] edgeSlots) throws IllegalArgumentException {
+		if (outOffsets.length != elements.length + 1 || outOffsets[elements.length] != targets.length
+				|| weights.length != targets.length || modes.length != targets.length
+				|| reversed.length != targets.length)
+			throw new IllegalArgumentException("Snapshot arrays don't match");
+		this.elements = elements;
+		this.outOffsets = outOffsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.modes = modes;
+		this.reversed = reversed;
+		this.edgeSlots = edgeSlots;
+		index();
+	}
+
+	/**
+	 * Derives the names, tails and incoming arrays from the outgoing arrays.
+	 */
+	private void index() {
+		int n = elements.length;
+		int slots = targets.length;
+		names = new HashMap<V, Integer>(n * 2);
+		for (int v = 0; v < n; v++)
+			names.put(elements[v], v);
+
+		tails = new int[slots];
+		inOffsets = new int[n + 1];
+		for (int u = 0; u < n; u++) {
+			for (int slot = outOffsets[u]; slot < outOffsets[u + 1]; slot++) {
+				tails[slot] = u;
+				inOffsets[targets[slot] + 1]++;
+				modeMask |= 1L << modes[slot];
+			}
+		}
+		for (int v = 0; v < n; v++)
+			inOffsets[v + 1] += inOffsets[v];
+
+		// fill incoming slots, pointing each back at the outgoing slot of the
+		// same connection
+		inSources = new int[slots];
+		inWeights = new int[slots];
+		inSlots = new int[slots];
+		int[] next = new int[n];
+		for (int v = 0; v < n; v++)
+			next[v] = inOffsets[v];
+		for (int slot = 0; slot < slots; slot++) {
+			int v = targets[slot];
+			int j = next[v]++;
+			inSources[j] = tails[slot];
+			inWeights[j] = weights[slot];
+			inSlots[j] = slot;
+		}
+	}
+
+	/**
+	 * Returns the number of vertices in the snapshot.
+	 *
+	 * @return integer corresponding to amount of vertices
+	 */
+	@Override
+	public int numVertices() {
+		return elements.length;
+	}
+
+	/**
+	 * Returns the number of outgoing slots in the snapshot.
+	 *
+	 * @return integer corresponding to amount of slots
+	 */
+	@Override
+	public int numSlots() {
+		return targets.length;
+	}
+
+	/**
+	 * Returns the dense id of Vertex v, or -1 if v was not in the graph when
+	 * the snapshot was taken.
+	 *
+	 * @param v Vertex to be looked up
+	 * @return id of v, or -1
+	 */
+	public int indexOf(Vertex<V> v) {
+		Integer id = (ids == null ? null : ids.get(v));
+		return (id == null ? -1 : id);
+	}
+
+	/**
+	 * Returns the Vertex with dense id {@code id}.
+	 *
+	 * @param id Dense id of vertex
+	 * @return Vertex of the source graph, or null if there is none
+	 */
+	public Vertex<V> vertex(int id) {
+		return (vertices == null ? null : vertices[id]);
+	}
+
+	/**
+	 * Returns the element the vertex with dense id {@code id} held when the
+	 * snapshot was taken.
+	 *
+	 * @param id Dense id of vertex
+	 * @return Element of the vertex
+	 */
+	public V element(int id) {
+		return elements[id];
+	}
+
+	/**
+	 * Returns the dense id of the vertex holding {@code element}, or -1 if no
+	 * vertex held it when the snapshot was taken.
+	 *
+	 * @param element Element to be looked up
+	 * @return id of the vertex, or -1
+	 */
+	public int find(V element) {
+		Integer id = names.get(element);
+		return (id == null ? -1 : id);
+	}
+
+	/**
+	 * Returns the first outgoing slot of vertex u.
+	 *
+	 * @param u Dense id of vertex
+	 * @return first slot of u
+	 */
+	@Override
+	public int outStart(int u) {
+		return outOffsets[u];
+	}
+
+	/**
+	 * Returns one past the last outgoing slot of vertex u.
+	 *
+	 * @param u Dense id of vertex
+	 * @return end of the slot range of u
+	 */
+	@Override
+	public int outEnd(int u) {
+		return outOffsets[u + 1];
+	}
+
+	/**
+	 * Returns the vertex reached by slot {@code slot}.
+	 *
+	 * @param slot Outgoing slot
+	 * @return Dense id of the target vertex
+	 */
+	@Override
+	public int target(int slot) {
+		return targets[slot];
+	}
+
+	/**
+	 * Returns the vertex that slot {@code slot} leaves from.
+	 *
+	 * @param slot Outgoing slot
+	 * @return Dense id of the origin vertex
+	 */
+	public int tail(int slot) {
+		return tails[slot];
+	}
+
+	/**
+	 * Returns the weight of slot {@code slot}.
+	 *
+	 * @param slot Outgoing slot
+	 * @return weight of the connection
+	 */
+	@Override
+	public int weight(int slot) {
+		return weights[slot];
+	}
+
+	/**
+	 * Returns the Edge of the source graph stored in slot {@code slot}.
+	 *
+	 * @param slot Outgoing slot
+	 * @return Edge of the source graph, or null if there is none
+	 */
+	public Edge<Integer> edge(int slot) {
+		return (edges == null ? null : edges[slot]);
+	}
+
+	/**
+	 * Returns the mode of transportation of slot {@code slot}.
+	 *
+	 * @param slot Outgoing slot
+	 * @return mode of transportation, null if the source graph had none
+	 */
+	public String mode(int slot) {
+		return ModeDictionary.name(modes[slot]);
+	}
+
+	/**
+	 * Returns the {@link ModeDictionary} id of the mode of slot {@code slot}.
+	 *
+	 * @param slot Outgoing slot
+	 * @return id of the mode of transportation
+	 */
+	public byte modeId(int slot) {
+		return modes[slot];
+	}
+
+	/**
+	 * Returns the mask of every mode used by a slot of the snapshot. A route
+	 * filtered by a mask covering it is not filtered at all.
+	 *
+	 * @return mask of the modes used
+	 */
+	public long modeMask() {
+		return modeMask;
+	}
+
+	/**
+	 * Represents the connection of slot {@code slot} as it was when the
+	 * snapshot was taken. String is in the form
+	 * "[String] [String] [int] [String]", with the endpoints in the stored
+	 * order of the edge, as {@link AdjacencyListGraph#pathBetweenVertex(Edge)}
+	 * prints them.
+	 *
+	 * @param slot Outgoing slot
+	 * @return String representation of the connection
+	 */
+	public String describe(int slot) {
+		int u = tails[slot], v = targets[slot];
+		if (reversed[slot]) {
+			u = targets[slot];
+			v = tails[slot];
+		}
+		return elements[u] + " " + elements[v] + " " + weights[slot] + " " + ModeDictionary.name(modes[slot]);
+	}
+
+	/**
+	 * Returns true if slot {@code slot} runs from the destination of its edge
+	 * back to the origin, which only happens in an undirected graph.
+	 *
+	 * @param slot Outgoing slot
+	 * @return true if the slot is reversed
+	 */
+	public boolean isReversed(int slot) {
+		return reversed[slot];
+	}
+
+	/**
+	 * Returns the number of edges in the snapshot.
+	 *
+	 * @return integer corresponding to amount of edges
+	 */
+	public int numEdges() {
+		return edgeSlots.length;
+	}
+
+	/**
+	 * Returns the forward slot of the k-th edge, counting edges in the order
+	 * they were inserted into the source graph.
+	 *
+	 * @param k Index of edge, starting at 0
+	 * @return Outgoing slot
+	 */
+	public int edgeSlot(int k) {
+		return edgeSlots[k];
+	}
+
+	/**
+	 * Returns the first incoming entry of vertex v.
+	 *
+	 * @param v Dense id of vertex
+	 * @return first incoming entry of v
+	 */
+	public int inStart(int v) {
+		return inOffsets[v];
+	}
+
+	/**
+	 * Returns one past the last incoming entry of vertex v.
+	 *
+	 * @param v Dense id of vertex
+	 * @return end of the incoming range of v
+	 */
+	public int inEnd(int v) {
+		return inOffsets[v + 1];
+	}
+
+	/**
+	 * Returns the vertex that incoming entry {@code j} comes from.
+	 *
+	 * @param j Incoming entry
+	 * @return Dense id of the origin vertex
+	 */
+	public int inSource(int j) {
+		return inSources[j];
+	}
+
+	/**
+	 * Returns the weight of incoming entry {@code j}.
+	 *
+	 * @param j Incoming entry
+	 * @return weight of the connection
+	 */
+	public int inWeight(int j) {
+		return inWeights[j];
+	}
+
+	/**
+	 * Returns the outgoing slot holding the same connection as incoming entry
+	 * {@code j}.
+	 *
+	 * @param j Incoming entry
+	 * @return Outgoing slot
+	 */
+	public int inSlot(int j) {
+		return inSlots[j];
+	}
+
+}
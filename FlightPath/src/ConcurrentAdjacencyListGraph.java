@@ -0,0 +1,342 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * An {@link AdjacencyListGraph} that can be read and changed by many threads
+ * at once, without copying the graph.
+ *
+ * Every vertex is guarded by one of a fixed set of striped locks, chosen by
+ * the identity of the vertex. Edge operations lock the stripes of both
+ * endpoints, always in increasing stripe order, so two threads can never wait
+ * on each other; edge changes in different parts of the graph run in
+ * parallel. Inserting and removing vertices changes the vertex list, so it
+ * takes the write side of a read/write lock that every other operation holds
+ * the read side of.
+ *
+ * Iterables returned by this graph are copies taken under the locks, so they
+ * may be iterated while other threads change the graph. Listeners are called
+ * from the thread making the change while its stripes are held, and must be
+ * thread-safe themselves.
+ *
+ * @author Minh Nguyen
+ */
+public class ConcurrentAdjacencyListGraph<V, E> extends AdjacencyListGraph<V, E> {
+
+	// number of vertex locks, a power of two
+	private static final int STRIPES = 256;
+
+	private ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+	private ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+	// guards the list of all edges, which every edge change appends to or
+	// unlinks from in constant time
+	private Object edgeList = new Object();
+	private AtomicLong epoch = new AtomicLong();
+
+	/**
+	 * Constructs an empty graph (assume undirected).
+	 */
+	public ConcurrentAdjacencyListGraph() {
+		this(false);
+	}
+
+	/**
+	 * Constructs an empty graph.
+	 *
+	 * @param isDirected Determine if graph is directed or not
+	 */
+	public ConcurrentAdjacencyListGraph(boolean isDirected) {
+		super(isDirected);
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Returns the stripe guarding vertex v.
+	 *
+	 * @param v Vertex to be looked up
+	 * @return index of the stripe
+	 */
+	private int stripe(Vertex<V> v) {
+		int h = System.identityHashCode(v);
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	/**
+	 * Takes the read lock and the stripes of u and v, lowest stripe first.
+	 *
+	 * @param u First vertex
+	 * @param v Second vertex
+	 */
+	private void lock(Vertex<V> u, Vertex<V> v) {
+		int a = stripe(u), b = stripe(v);
+		structure.readLock().lock();
+		stripes[Math.min(a, b)].lock();
+		if (a != b)
+			stripes[Math.max(a, b)].lock();
+	}
+
+	/**
+	 * Releases the locks taken by {@link #lock(Vertex, Vertex)}.
+	 *
+	 * @param u First vertex
+	 * @param v Second vertex
+	 */
+	private void unlock(Vertex<V> u, Vertex<V> v) {
+		int a = stripe(u), b = stripe(v);
+		if (a != b)
+			stripes[Math.max(a, b)].unlock();
+		stripes[Math.min(a, b)].unlock();
+		structure.readLock().unlock();
+	}
+
+	/**
+	 * Runs {@code reader} while no other thread can change the graph, so it
+	 * sees one consistent state, e.g. to take a {@link CompactGraph} snapshot.
+	 *
+	 * @param <T>    Generic type of result
+	 * @param reader Code reading the graph
+	 * @return Result of reader
+	 */
+	public <T> T atomically(Supplier<T> reader) {
+		structure.writeLock().lock();
+		try {
+			return reader.get();
+		} finally {
+			structure.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public long getEpoch() {
+		return epoch.get();
+	}
+
+	@Override
+	protected void advanceEpoch() {
+		epoch.incrementAndGet();
+	}
+
+	@Override
+	protected Position<Edge<E>> linkEdge(Edge<E> edge) {
+		synchronized (edgeList) {
+			return super.linkEdge(edge);
+		}
+	}
+
+	@Override
+	protected void unlinkEdge(Position<Edge<E>> pos) {
+		synchronized (edgeList) {
+			super.unlinkEdge(pos);
+		}
+	}
+
+	@Override
+	public int numVertices() {
+		structure.readLock().lock();
+		try {
+			return super.numVertices();
+		} finally {
+			structure.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int numEdges() {
+		synchronized (edgeList) {
+			return super.numEdges();
+		}
+	}
+
+	@Override
+	public Iterable<Vertex<V>> vertices() {
+		structure.readLock().lock();
+		try {
+			return copy(super.vertices());
+		} finally {
+			structure.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Iterable<Edge<E>> edges() {
+		synchronized (edgeList) {
+			return copy(super.edges());
+		}
+	}
+
+	@Override
+	public Edge<E> getEdge(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+		lock(u, u);
+		try {
+			return super.getEdge(u, v);
+		} finally {
+			unlock(u, u);
+		}
+	}
+
+	@Override
+	public int inDegree(Vertex<V> v) throws IllegalArgumentException {
+		lock(v, v);
+		try {
+			return super.inDegree(v);
+		} finally {
+			unlock(v, v);
+		}
+	}
+
+	@Override
+	public int OutDegree(Vertex<V> v) throws IllegalArgumentException {
+		lock(v, v);
+		try {
+			return super.OutDegree(v);
+		} finally {
+			unlock(v, v);
+		}
+	}
+
+	@Override
+	public Iterable<Edge<E>> incomingEdges(Vertex<V> v) throws IllegalArgumentException {
+		lock(v, v);
+		try {
+			return copy(super.incomingEdges(v));
+		} finally {
+			unlock(v, v);
+		}
+	}
+
+	@Override
+	public Iterable<Edge<E>> outgoingEdges(Vertex<V> v) throws IllegalArgumentException {
+		lock(v, v);
+		try {
+			return copy(super.outgoingEdges(v));
+		} finally {
+			unlock(v, v);
+		}
+	}
+
+	@Override
+	public Vertex<V> insertVertex(V element) {
+		structure.writeLock().lock();
+		try {
+			return super.insertVertex(element);
+		} finally {
+			structure.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element) throws IllegalArgumentException {
+		lock(u, v);
+		try {
+			return super.insertEdge(u, v, element);
+		} finally {
+			unlock(u, v);
+		}
+	}
+
+	@Override
+	public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element, String transportation)
+			throws IllegalArgumentException {
+		// the mode is set along with the edge, under the same locks
+		lock(u, v);
+		try {
+			return super.insertEdge(u, v, element, transportation);
+		} finally {
+			unlock(u, v);
+		}
+	}
+
+	@Override
+	public void removeVertex(Vertex<V> v) throws IllegalArgumentException {
+		structure.writeLock().lock();
+		try {
+			super.removeVertex(v);
+		} finally {
+			structure.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void removeEdge(Edge<E> e) throws IllegalArgumentException {
+		Vertex<V>[] endpoints = endVertices(e);
+		lock(endpoints[0], endpoints[1]);
+		try {
+			super.removeEdge(e);
+		} finally {
+			unlock(endpoints[0], endpoints[1]);
+		}
+	}
+
+	@Override
+	public V replace(Vertex<V> v, V element) throws IllegalArgumentException {
+		lock(v, v);
+		try {
+			return super.replace(v, element);
+		} finally {
+			unlock(v, v);
+		}
+	}
+
+	@Override
+	public E replace(Edge<E> e, E element) throws IllegalArgumentException {
+		Vertex<V>[] endpoints = endVertices(e);
+		lock(endpoints[0], endpoints[1]);
+		try {
+			return super.replace(e, element);
+		} finally {
+			unlock(endpoints[0], endpoints[1]);
+		}
+	}
+
+	@Override
+	public String getModeOfTransportation(Edge<E> e) throws IllegalArgumentException {
+		Vertex<V>[] endpoints = endVertices(e);
+		lock(endpoints[0], endpoints[1]);
+		try {
+			return super.getModeOfTransportation(e);
+		} finally {
+			unlock(endpoints[0], endpoints[1]);
+		}
+	}
+
+	@Override
+	public byte getModeId(Edge<E> e) throws IllegalArgumentException {
+		Vertex<V>[] endpoints = endVertices(e);
+		lock(endpoints[0], endpoints[1]);
+		try {
+			return super.getModeId(e);
+		} finally {
+			unlock(endpoints[0], endpoints[1]);
+		}
+	}
+
+	@Override
+	public String pathBetweenVertex(Edge<E> e) {
+		Vertex<V>[] endpoints = endVertices(e);
+		lock(endpoints[0], endpoints[1]);
+		try {
+			return super.pathBetweenVertex(e);
+		} finally {
+			unlock(endpoints[0], endpoints[1]);
+		}
+	}
+
+	/**
+	 * Copies an iterable collection into a list.
+	 *
+	 * @param <T>   Generic type of element
+	 * @param items Collection to be copied
+	 * @return List holding the same elements
+	 */
+	private static <T> List<T> copy(Iterable<T> items) {
+		List<T> list = new ArrayList<T>();
+		for (T item : items)
+			list.add(item);
+		return list;
+	}
+
+}
@@ -0,0 +1,147 @@
+import java.util.Arrays;
+
+/**
+ * The Connection Scan Algorithm for earliest arrival queries over a
+ * {@link Timetable}, with the connections of a {@link CompactGraph} as
+ * unscheduled connections that can be taken at any time.
+ *
+ * A query scans the scheduled connections once, in departure order from the
+ * departure time on: a connection is taken if its origin is reached by the
+ * time it leaves and it reaches its destination earlier than known so far.
+ * Whenever a station is reached earlier, the unscheduled connections out of
+ * it are relaxed Dijkstra style, so every station reachable by them is
+ * reached as early as possible before a later scheduled connection is
+ * scanned. The scan stops at the first connection leaving after the
+ * destination was reached.
+ *
+ * Stations of the timetable that are not airports of the snapshot get ids
+ * after those of the snapshot. The timetable must not change while a search
+ * uses it. An instance is not thread-safe.
+ *
+ * @author Minh Nguyen
+ */
+public class ConnectionScan<V> {
+
+	// leg of a station that was not reached by any connection
+	private static final int NO_LEG = Integer.MIN_VALUE;
+
+	private CompactGraph<V> g;
+	private Timetable<V> timetable;
+	// search id of every station of the timetable
+	private int[] stationIds;
+	// earliest arrival time at every station
+	private int[] arrival;
+	// connection used to reach every station, a slot of g if it is not
+	// negative, else -(i + 1) for the i-th scheduled connection
+	private int[] leg;
+	private IndexedMinHeap pq;
+
+	/**
+	 * Constructs an earliest arrival search over a timetable and a snapshot.
+	 *
+	 * @param g         Snapshot of unscheduled connections
+	 * @param timetable Timetable of scheduled connections
+	 */
+	public ConnectionScan(CompactGraph<V> g, Timetable<V> timetable) {
+		this.g = g;
+		this.timetable = timetable;
+		int n = g.numVertices();
+		stationIds = new int[timetable.numStations()];
+		for (int s = 0; s < stationIds.length; s++) {
+			int id = g.find(timetable.station(s));
+			stationIds[s] = (id == -1 ? n++ : id);
+		}
+		arrival = new int[n];
+		leg = new int[n];
+		pq = new IndexedMinHeap(g.numVertices());
+	}
+
+	/**
+	 * Returns the search id of a station.
+	 *
+	 * @param station Airport of the snapshot or station of the timetable
+	 * @return id of the station, or -1 if neither has it
+	 */
+	public int find(V station) {
+		int id = g.find(station);
+		if (id == -1) {
+			int s = timetable.find(station);
+			if (s != -1)
+				id = stationIds[s];
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the journey from src reaching dest the earliest, leaving at
+	 * {@code departure} or later.
+	 *
+	 * @param src       Search id of starting station
+	 * @param dest      Search id of destination station
+	 * @param departure Earliest departure in minutes after midnight
+	 * @return Journey, or null if dest can't be reached
+	 */
+	public Journey<V> route(int src, int dest, int departure) {
+		Arrays.fill(arrival, Integer.MAX_VALUE);
+		Arrays.fill(leg, NO_LEG);
+		arrival[src] = departure;
+		relaxUnscheduled(src);
+
+		for (int i = timetable.firstDeparture(departure), size = timetable.size(); i < size; i++) {
+			int leaves = timetable.departure(i);
+			// every later connection leaves too late to help
+			if (leaves >= arrival[dest])
+				break;
+			int from = stationIds[timetable.origin(i)];
+			int to = stationIds[timetable.destination(i)];
+			if (arrival[from] <= leaves && timetable.arrival(i) < arrival[to]) {
+				arrival[to] = timetable.arrival(i);
+				leg[to] = -(i + 1);
+				relaxUnscheduled(to);
+			}
+		}
+		if (arrival[dest] == Integer.MAX_VALUE)
+			return null;
+
+		// walk the legs back from dest
+		int length = 0;
+		for (int v = dest; v != src; v = origin(leg[v]))
+			length++;
+		int[] legs = new int[length];
+		for (int v = dest; v != src; v = origin(leg[v]))
+			legs[--length] = leg[v];
+		return new Journey<V>(g, timetable, departure, arrival[dest], legs);
+	}
+
+	/**
+	 * Brings forward every airport reachable from v by unscheduled
+	 * connections that v now reaches earlier.
+	 *
+	 * @param v Search id of the station reached earlier
+	 */
+	private void relaxUnscheduled(int v) {
+		if (v >= g.numVertices())
+			return;
+		pq.push(v, arrival[v]);
+		while (!pq.isEmpty()) {
+			int u = pq.poll();
+			for (int slot = g.outStart(u), end = g.outEnd(u); slot < end; slot++) {
+				int w = g.target(slot);
+				int arrives = arrival[u] + g.weight(slot);
+				if (arrives < arrival[w]) {
+					arrival[w] = arrives;
+					leg[w] = slot;
+					pq.push(w, arrives);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the search id of the station a leg leaves.
+	 */
+	private int origin(int leg) {
+		return (leg >= 0 ? g.tail(leg) : stationIds[timetable.origin(-leg - 1)]);
+	}
+
+}
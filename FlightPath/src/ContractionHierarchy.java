@@ -0,0 +1,629 @@
+import java.util.Arrays;
+
+/**
+ * Contraction hierarchies over a {@link CompactGraph}. Preprocessing removes
+ * ("contracts") the vertices one by one, least important first, and adds a
+ * shortcut u-&gt;w whenever a shortest path u-&gt;v-&gt;w through the removed
+ * vertex v has no equally short witness path avoiding it. Importance is the
+ * edge difference (shortcuts added minus connections removed) plus the number
+ * of neighbours already contracted, kept up to date lazily.
+ *
+ * A query is a bidirectional Dijkstra that only climbs: the forward search
+ * from the origin and the backward search from the destination only follow
+ * arcs towards vertices contracted later. Shortcuts remember the two arcs
+ * they replace, so a route is unpacked back into the outgoing slots of the
+ * snapshot, and therefore into the original {@link Edge} connections.
+ *
+ * The hierarchy is not updated when the graph changes: a newer snapshot
+ * needs a new instance, whose preprocessing grows faster than the graph, so
+ * it suits graphs that rarely change.
+ *
+ * An instance is not thread-safe.
+ *
+ * @author Minh Nguyen
+ */
+public class ContractionHierarchy<V> implements RoutingEngine<V> {
+
+	// vertices a witness search may settle before giving up (and keeping
+	// the shortcut, which is always safe)
+	private static final int WITNESS_LIMIT = 500;
+	// the same while only estimating the importance of a vertex, where a
+	// missed witness just makes the vertex look less worth contracting
+	private static final int ESTIMATE_LIMIT = 50;
+
+	private CompactGraph<V> g;
+	private int[] rank;
+
+	// every arc: originals first (arc id == slot), then shortcuts
+	private int arcs = 0;
+	private int[] arcFrom, arcTo, arcWeight;
+	private int[] arcFirst, arcSecond; // children of a shortcut, -1 otherwise
+
+	// upward arcs of u: upOut leaves u, upIn enters u; both towards higher rank
+	private int[] upOutOffsets, upOutArcs;
+	private int[] upInOffsets, upInArcs;
+
+	// plain search for routes filtered by mode, which the shortcuts ignore
+	private DijkstraSearch<V> filtered;
+
+	// query scratch
+	private int[] distF, parentF, stampF;
+	private int[] distB, parentB, stampB;
+	private int generation = 0;
+	private IndexedMinHeap pqF, pqB;
+
+	// preprocessing scratch
+	private int[][] outArcs, inArcs;
+	private int[] outCount, inCount;
+	private int[] witnessDist, witnessStamp;
+	private int witnessGeneration = 0;
+	// neighbours the current witness search has yet to decide on, and the
+	// length of the way through the contracted vertex to each of them
+	private int[] targetStamp, targetVia, targetList;
+	private int targetGeneration = 0;
+	private IndexedMinHeap witnessPq;
+
+	/**
+	 * Contracts every vertex of {@code g} and prepares the query structures.
+	 *
+	 * @param g Snapshot to be preprocessed
+	 */
+	public ContractionHierarchy(CompactGraph<V> g) {
+		this.g = g;
+		int n = g.numVertices();
+		int slots = g.numSlots();
+
+		arcFrom = new int[Math.max(16, slots * 2)];
+		arcTo = new int[arcFrom.length];
+		arcWeight = new int[arcFrom.length];
+		arcFirst = new int[arcFrom.length];
+		arcSecond = new int[arcFrom.length];
+		outArcs = new int[n][];
+		inArcs = new int[n][];
+		outCount = new int[n];
+		inCount = new int[n];
+		for (int v = 0; v < n; v++) {
+			outArcs[v] = new int[Math.max(2, g.outEnd(v) - g.outStart(v))];
+			inArcs[v] = new int[Math.max(2, g.inEnd(v) - g.inStart(v))];
+		}
+		for (int slot = 0; slot < slots; slot++)
+			addArc(g.tail(slot), g.target(slot), g.weight(slot), -1, -1);
+
+		witnessDist = new int[n];
+		witnessStamp = new int[n];
+		targetStamp = new int[n];
+		targetVia = new int[n];
+		targetList = new int[n];
+		witnessPq = new IndexedMinHeap(n);
+		contract();
+
+		// free preprocessing scratch
+		outArcs = inArcs = null;
+		outCount = inCount = null;
+		witnessDist = witnessStamp = null;
+		targetStamp = targetVia = targetList = null;
+		witnessPq = null;
+
+		buildUpward();
+		distF = new int[n];
+		parentF = new int[n];
+		stampF = new int[n];
+		distB = new int[n];
+		parentB = new int[n];
+		stampB = new int[n];
+		pqF = new IndexedMinHeap(n);
+		pqB = new IndexedMinHeap(n);
+	}
+
+	/**
+	 * Returns the snapshot this hierarchy was built from.
+	 *
+	 * @return Snapshot of the hierarchy
+	 */
+	@Override
+	public CompactGraph<V> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Returns the number of shortcuts added during preprocessing.
+	 *
+	 * @return number of shortcuts
+	 */
+	public int numShortcuts() {
+		return arcs - g.numSlots();
+	}
+
+	/**
+	 * Returns the fastest route from src to dest, or null if dest can't be
+	 * reached.
+	 *
+	 * @param src  Dense id of starting vertex
+	 * @param dest Dense id of destination vertex
+	 * @return Route from src to dest, or null
+	 */
+	@Override
+	public Route<V> route(int src, int dest) {
+		if (++generation == 0) {
+			// stamps wrapped around, forget every old entry
+			for (int i = 0; i < stampF.length; i++)
+				stampF[i] = stampB[i] = 0;
+			generation = 1;
+		}
+		pqF.clear();
+		pqB.clear();
+		stampF[src] = generation;
+		distF[src] = 0;
+		parentF[src] = -1;
+		pqF.push(src, 0);
+		stampB[dest] = generation;
+		distB[dest] = 0;
+		parentB[dest] = -1;
+		pqB.push(dest, 0);
+
+		long best = Long.MAX_VALUE;
+		int meet = -1;
+
+		// both searches only climb, so neither can stop at the first meeting;
+		// a side is done once its queue minimum reaches best
+		while (true) {
+			boolean forward = !pqF.isEmpty() && pqF.minKey() < best;
+			boolean backward = !pqB.isEmpty() && pqB.minKey() < best;
+			if (!forward && !backward)
+				break;
+			if (forward && (!backward || pqF.minKey() <= pqB.minKey())) {
+				int u = pqF.poll();
+				if (stampB[u] == generation && (long) distF[u] + distB[u] < best) {
+					best = (long) distF[u] + distB[u];
+					meet = u;
+				}
+				if (stalled(u, upInOffsets, upInArcs, arcFrom, distF, stampF))
+					continue;
+				for (int i = upOutOffsets[u], end = upOutOffsets[u + 1]; i < end; i++) {
+					int arc = upOutArcs[i];
+					int v = arcTo[arc];
+					int dv = distF[u] + arcWeight[arc];
+					if (stampF[v] != generation || dv < distF[v]) {
+						stampF[v] = generation;
+						distF[v] = dv;
+						parentF[v] = arc;
+						pqF.push(v, dv);
+					}
+				}
+			} else {
+				int u = pqB.poll();
+				if (stampF[u] == generation && (long) distF[u] + distB[u] < best) {
+					best = (long) distF[u] + distB[u];
+					meet = u;
+				}
+				if (stalled(u, upOutOffsets, upOutArcs, arcTo, distB, stampB))
+					continue;
+				for (int i = upInOffsets[u], end = upInOffsets[u + 1]; i < end; i++) {
+					int arc = upInArcs[i];
+					int v = arcFrom[arc];
+					int dv = distB[u] + arcWeight[arc];
+					if (stampB[v] != generation || dv < distB[v]) {
+						stampB[v] = generation;
+						distB[v] = dv;
+						parentB[v] = arc;
+						pqB.push(v, dv);
+					}
+				}
+			}
+		}
+
+		if (meet < 0)
+			return null;
+
+		// collect arcs in travel order, then unpack shortcuts into slots
+		int forwardArcs = 0;
+		for (int v = meet; v != src; v = arcFrom[parentF[v]])
+			forwardArcs++;
+		int backwardArcs = 0;
+		for (int v = meet; v != dest; v = arcTo[parentB[v]])
+			backwardArcs++;
+		int[] path = new int[forwardArcs + backwardArcs];
+		int i = forwardArcs;
+		for (int v = meet; v != src; v = arcFrom[parentF[v]])
+			path[--i] = parentF[v];
+		i = forwardArcs;
+		for (int v = meet; v != dest; v = arcTo[parentB[v]])
+			path[i++] = parentB[v];
+
+		return new Route<V>(g, (int) best, unpack(path));
+	}
+
+	/**
+	 * Returns the fastest route from src to dest over the allowed modes, or
+	 * null if dest can't be reached. Shortcuts span connections of any
+	 * mode, so a route leaving out a mode that the snapshot uses is found by
+	 * a plain Dijkstra search instead of the hierarchy.
+	 *
+	 * @param src   Dense id of starting vertex
+	 * @param dest  Dense id of destination vertex
+	 * @param modes Mask of allowed modes
+	 * @return Route from src to dest, or null
+	 */
+	@Override
+	public Route<V> route(int src, int dest, long modes) {
+		if ((modes & g.modeMask()) == g.modeMask())
+			return route(src, dest);
+		if (filtered == null)
+			filtered = new DijkstraSearch<V>(g);
+		return filtered.route(src, dest, modes);
+	}
+
+	/**
+	 * Stall-on-demand: u need not be expanded if a higher vertex already
+	 * reached by the same search offers a shorter way down to u, since then
+	 * u is not on any shortest up-down route.
+	 *
+	 * @param u       Dense id of settled vertex
+	 * @param offsets Offsets of arcs between u and higher vertices
+	 * @param list    Arcs between u and higher vertices
+	 * @param ends    Endpoint array giving the higher vertex of each arc
+	 * @param dist    Distances of the search
+	 * @param stamp   Stamps of the search
+	 * @return true if u is stalled
+	 */
+	private boolean stalled(int u, int[] offsets, int[] list, int[] ends, int[] dist, int[] stamp) {
+		for (int i = offsets[u], end = offsets[u + 1]; i < end; i++) {
+			int arc = list[i];
+			int x = ends[arc];
+			if (stamp[x] == generation && (long) dist[x] + arcWeight[arc] < dist[u])
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Expands shortcut arcs into the outgoing slots they stand for.
+	 *
+	 * @param path Arcs in travel order
+	 * @return Slots in travel order
+	 */
+	private int[] unpack(int[] path) {
+		int length = 0;
+		for (int arc : path)
+			length += slotCount(arc);
+		int[] slots = new int[length];
+		int[] stack = new int[16];
+		int out = 0;
+		for (int arc : path) {
+			int top = 0;
+			stack[top++] = arc;
+			while (top > 0) {
+				int a = stack[--top];
+				if (arcFirst[a] < 0) {
+					slots[out++] = a;
+				} else {
+					if (top + 2 > stack.length)
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					// push second first so the first child is expanded first
+					stack[top++] = arcSecond[a];
+					stack[top++] = arcFirst[a];
+				}
+			}
+		}
+		return slots;
+	}
+
+	/**
+	 * Returns the number of original slots an arc expands to.
+	 *
+	 * @param arc Arc id
+	 * @return number of slots
+	 */
+	private int slotCount(int arc) {
+		int count = 0;
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = arc;
+		while (top > 0) {
+			int a = stack[--top];
+			if (arcFirst[a] < 0) {
+				count++;
+			} else {
+				if (top + 2 > stack.length)
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				stack[top++] = arcSecond[a];
+				stack[top++] = arcFirst[a];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Contracts every vertex in order of importance, assigning ranks.
+	 */
+	private void contract() {
+		int n = g.numVertices();
+		rank = new int[n];
+		int[] contractedNeighbours = new int[n];
+		IndexedMinHeap order = new IndexedMinHeap(n);
+		for (int v = 0; v < n; v++)
+			order.push(v, importance(v, 0));
+
+		int next = 0;
+		while (!order.isEmpty()) {
+			int v = order.poll();
+			// lazy update: importance may have grown since v was queued
+			int current = importance(v, contractedNeighbours[v]);
+			if (!order.isEmpty() && current > order.minKey()) {
+				order.push(v, current);
+				continue;
+			}
+
+			shortcuts(v, true);
+			rank[v] = next++;
+			// unlink v so later searches never see it
+			for (int i = 0; i < outCount[v]; i++) {
+				int arc = outArcs[v][i];
+				int w = arcTo[arc];
+				if (w != v) {
+					contractedNeighbours[w]++;
+					unlinkIn(w, arc);
+				}
+			}
+			for (int i = 0; i < inCount[v]; i++) {
+				int arc = inArcs[v][i];
+				int u = arcFrom[arc];
+				if (u != v) {
+					contractedNeighbours[u]++;
+					unlinkOut(u, arc);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the importance of contracting v now.
+	 *
+	 * @param v                    Dense id of vertex
+	 * @param contractedNeighbours Neighbours of v already contracted
+	 * @return edge difference plus contracted neighbours
+	 */
+	private int importance(int v, int contractedNeighbours) {
+		return shortcuts(v, false) - outCount[v] - inCount[v] + contractedNeighbours;
+	}
+
+	/**
+	 * Counts, and optionally adds, the shortcuts needed to contract v.
+	 *
+	 * @param v   Dense id of vertex
+	 * @param add true to add the shortcuts, false to only count them
+	 * @return number of shortcuts needed
+	 */
+	private int shortcuts(int v, boolean add) {
+		int count = 0;
+		for (int i = 0; i < inCount[v]; i++) {
+			int in = inArcs[v][i];
+			int u = arcFrom[in];
+			if (u == v)
+				continue;
+
+			// no neighbour on the far side of v
+			if (!witness(u, v, in, add ? WITNESS_LIMIT : ESTIMATE_LIMIT))
+				continue;
+
+			for (int j = 0; j < outCount[v]; j++) {
+				int out = outArcs[v][j];
+				int w = arcTo[out];
+				if (w == u || w == v)
+					continue;
+				int via = arcWeight[in] + arcWeight[out];
+				if (witnessStamp[w] == witnessGeneration && witnessDist[w] <= via)
+					continue;
+				count++;
+				if (add) {
+					// a direct arc u->w longer than the shortcut is dominated
+					for (int k = outCount[u] - 1; k >= 0; k--) {
+						int arc = outArcs[u][k];
+						if (arcTo[arc] == w && arcWeight[arc] > via) {
+							unlinkOut(u, arc);
+							unlinkIn(w, arc);
+						}
+					}
+					addArc(u, w, via, in, out);
+					// later pairs from u may use the new shortcut as witness
+					if (witnessStamp[w] != witnessGeneration || via < witnessDist[w]) {
+						witnessStamp[w] = witnessGeneration;
+						witnessDist[w] = via;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Runs a bounded Dijkstra from u that avoids v (contracted vertices are
+	 * already unlinked), leaving the distances found in witnessDist. It
+	 * stops as soon as every neighbour w on the far side of v is decided:
+	 * either a way to w no longer than u-&gt;v-&gt;w was found, or w was
+	 * settled further away, or the search went past every undecided
+	 * u-&gt;v-&gt;w.
+	 *
+	 * @param u       Dense id of starting vertex
+	 * @param v       Dense id of vertex being contracted
+	 * @param in      Arc from u to v
+	 * @param settles Vertices the search may settle before giving up
+	 * @return false if v has no neighbour on the far side but u
+	 */
+	private boolean witness(int u, int v, int in, int settles) {
+		if (++witnessGeneration == 0) {
+			Arrays.fill(witnessStamp, 0);
+			witnessGeneration = 1;
+		}
+		if (++targetGeneration == 0) {
+			Arrays.fill(targetStamp, 0);
+			targetGeneration = 1;
+		}
+		int targets = 0;
+		for (int j = 0; j < outCount[v]; j++) {
+			int out = outArcs[v][j];
+			int w = arcTo[out];
+			if (w == u || w == v)
+				continue;
+			int via = arcWeight[in] + arcWeight[out];
+			if (targetStamp[w] != targetGeneration) {
+				targetStamp[w] = targetGeneration;
+				targetVia[w] = via;
+				targetList[targets++] = w;
+			} else
+				targetVia[w] = Math.min(targetVia[w], via);
+		}
+		if (targets == 0)
+			return false;
+		int undecided = targets;
+		// furthest an undecided neighbour still needs the search to look
+		int limit = maxUndecidedVia(targets);
+
+		witnessPq.clear();
+		witnessStamp[u] = witnessGeneration;
+		witnessDist[u] = 0;
+		witnessPq.push(u, 0);
+		int settled = 0;
+		while (!witnessPq.isEmpty() && settled++ < settles) {
+			int x = witnessPq.poll();
+			int dx = witnessDist[x];
+			if (dx > limit)
+				break;
+			if (targetStamp[x] == targetGeneration) {
+				// settled further away than the way through v
+				targetStamp[x] = 0;
+				if (--undecided == 0)
+					break;
+				limit = maxUndecidedVia(targets);
+			}
+			for (int i = 0; i < outCount[x]; i++) {
+				int arc = outArcs[x][i];
+				int y = arcTo[arc];
+				if (y == v)
+					continue;
+				int dy = dx + arcWeight[arc];
+				if (witnessStamp[y] != witnessGeneration || dy < witnessDist[y]) {
+					witnessStamp[y] = witnessGeneration;
+					witnessDist[y] = dy;
+					witnessPq.push(y, dy);
+					if (targetStamp[y] == targetGeneration && dy <= targetVia[y]) {
+						// a witness for y
+						targetStamp[y] = 0;
+						if (--undecided == 0)
+							return true;
+						limit = maxUndecidedVia(targets);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the longest way through the contracted vertex to a neighbour
+	 * the witness search has yet to decide on.
+	 *
+	 * @param targets Number of neighbours in targetList
+	 * @return longest undecided way, or -1 if every neighbour is decided
+	 */
+	private int maxUndecidedVia(int targets) {
+		int limit = -1;
+		for (int i = 0; i < targets; i++)
+			if (targetStamp[targetList[i]] == targetGeneration)
+				limit = Math.max(limit, targetVia[targetList[i]]);
+		return limit;
+	}
+
+	/**
+	 * Adds an arc, growing the arc store and adjacency lists as needed.
+	 *
+	 * @param from   Dense id of origin vertex
+	 * @param to     Dense id of target vertex
+	 * @param weight Weight of the arc
+	 * @param first  First child arc of a shortcut, or -1
+	 * @param second Second child arc of a shortcut, or -1
+	 */
+	private void addArc(int from, int to, int weight, int first, int second) {
+		if (arcs == arcFrom.length) {
+			int size = arcs * 2;
+			arcFrom = Arrays.copyOf(arcFrom, size);
+			arcTo = Arrays.copyOf(arcTo, size);
+			arcWeight = Arrays.copyOf(arcWeight, size);
+			arcFirst = Arrays.copyOf(arcFirst, size);
+			arcSecond = Arrays.copyOf(arcSecond, size);
+		}
+		int arc = arcs++;
+		arcFrom[arc] = from;
+		arcTo[arc] = to;
+		arcWeight[arc] = weight;
+		arcFirst[arc] = first;
+		arcSecond[arc] = second;
+
+		if (outCount[from] == outArcs[from].length)
+			outArcs[from] = Arrays.copyOf(outArcs[from], outCount[from] * 2);
+		outArcs[from][outCount[from]++] = arc;
+		if (inCount[to] == inArcs[to].length)
+			inArcs[to] = Arrays.copyOf(inArcs[to], inCount[to] * 2);
+		inArcs[to][inCount[to]++] = arc;
+	}
+
+	/**
+	 * Removes an arc from the outgoing list of u.
+	 *
+	 * @param u   Dense id of vertex
+	 * @param arc Arc id
+	 */
+	private void unlinkOut(int u, int arc) {
+		for (int i = 0; i < outCount[u]; i++) {
+			if (outArcs[u][i] == arc) {
+				outArcs[u][i] = outArcs[u][--outCount[u]];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes an arc from the incoming list of w.
+	 *
+	 * @param w   Dense id of vertex
+	 * @param arc Arc id
+	 */
+	private void unlinkIn(int w, int arc) {
+		for (int i = 0; i < inCount[w]; i++) {
+			if (inArcs[w][i] == arc) {
+				inArcs[w][i] = inArcs[w][--inCount[w]];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Lays out the arcs that climb in rank as two CSR arrays for queries.
+	 */
+	private void buildUpward() {
+		int n = g.numVertices();
+		upOutOffsets = new int[n + 1];
+		upInOffsets = new int[n + 1];
+		for (int arc = 0; arc < arcs; arc++) {
+			if (rank[arcTo[arc]] > rank[arcFrom[arc]])
+				upOutOffsets[arcFrom[arc] + 1]++;
+			else if (rank[arcFrom[arc]] > rank[arcTo[arc]])
+				upInOffsets[arcTo[arc] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			upOutOffsets[v + 1] += upOutOffsets[v];
+			upInOffsets[v + 1] += upInOffsets[v];
+		}
+		upOutArcs = new int[upOutOffsets[n]];
+		upInArcs = new int[upInOffsets[n]];
+		int[] nextOut = Arrays.copyOf(upOutOffsets, n);
+		int[] nextIn = Arrays.copyOf(upInOffsets, n);
+		for (int arc = 0; arc < arcs; arc++) {
+			if (rank[arcTo[arc]] > rank[arcFrom[arc]])
+				upOutArcs[nextOut[arcFrom[arc]]++] = arc;
+			else if (rank[arcFrom[arc]] > rank[arcTo[arc]])
+				upInArcs[nextIn[arcTo[arc]]++] = arc;
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+/**
+ * Dijkstra's algorithm over a {@link CompactGraph}, recording the slot used to
+ * reach each vertex while relaxing. The distance, parent and heap arrays are
+ * allocated once and reused by every search; a generation stamp marks which
+ * entries belong to the current search, so starting a new one is O(1) instead
+ * of O(n).
+ *
+ * An instance is not thread-safe.
+ *
+ * @author Minh Nguyen
+ */
+public class DijkstraSearch<V> implements RoutingEngine<V> {
+
+	private CompactGraph<V> g;
+	private int[] dist;
+	private int[] parent;
+	private int[] stamp;
+	private int generation = 0;
+	private int source = -1;
+	// modes of the current search, and whether any is left out
+	private long modes = ModeDictionary.ALL;
+	private boolean filtered = false;
+	// vertex settled last, whose slots are relaxed by the next call to next()
+	private int last = -1;
+	private IndexedMinHeap pq;
+
+	/**
+	 * Constructs a search over {@code g}.
+	 *
+	 * @param g Snapshot to be searched
+	 */
+	public DijkstraSearch(CompactGraph<V> g) {
+		this.g = g;
+		int n = g.numVertices();
+		dist = new int[n];
+		parent = new int[n];
+		stamp = new int[n];
+		pq = new IndexedMinHeap(n);
+	}
+
+	/**
+	 * Returns the snapshot this search runs on.
+	 *
+	 * @return Snapshot of the search
+	 */
+	@Override
+	public CompactGraph<V> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Returns the fastest route from src to dest, or null if dest can't be
+	 * reached. The search stops as soon as dest is settled.
+	 *
+	 * @param src  Dense id of starting vertex
+	 * @param dest Dense id of destination vertex
+	 * @return Route from src to dest, or null
+	 */
+	@Override
+	public Route<V> route(int src, int dest) {
+		return route(src, dest, ModeDictionary.ALL);
+	}
+
+	/**
+	 * Returns the fastest route from src to dest over the allowed modes, or
+	 * null if dest can't be reached. The search stops as soon as dest is
+	 * settled.
+	 *
+	 * @param src   Dense id of starting vertex
+	 * @param dest  Dense id of destination vertex
+	 * @param modes Mask of allowed modes
+	 * @return Route from src to dest, or null
+	 */
+	@Override
+	public Route<V> route(int src, int dest, long modes) {
+		run(src, dest, modes);
+		if (distance(dest) == Integer.MAX_VALUE)
+			return null;
+		return Route.unwind(g, src, dest, dist[dest], parent);
+	}
+
+	/**
+	 * Settles every vertex reachable from src. Afterwards
+	 * {@link #distance(int)} and {@link #parent(int)} describe the full
+	 * shortest path tree.
+	 *
+	 * @param src Dense id of starting vertex
+	 */
+	public void search(int src) {
+		run(src, -1, ModeDictionary.ALL);
+	}
+
+	/**
+	 * Returns the route to dest in the tree left by the last search, or null
+	 * if dest was not reached.
+	 *
+	 * @param dest Dense id of destination vertex
+	 * @return Route from the last source to dest, or null
+	 */
+	public Route<V> routeTo(int dest) {
+		if (distance(dest) == Integer.MAX_VALUE)
+			return null;
+		return Route.unwind(g, source, dest, dist[dest], parent);
+	}
+
+	/**
+	 * Returns the distance to v found by the last search, or
+	 * Integer.MAX_VALUE if v was not reached.
+	 *
+	 * @param v Dense id of vertex
+	 * @return distance to v
+	 */
+	public int distance(int v) {
+		return (stamp[v] == generation ? dist[v] : Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the slot used to reach v in the last search, or -1 if v is the
+	 * source or was not reached.
+	 *
+	 * @param v Dense id of vertex
+	 * @return Outgoing slot, or -1
+	 */
+	public int parent(int v) {
+		return (stamp[v] == generation ? parent[v] : -1);
+	}
+
+	/**
+	 * Starts a search from src over the allowed modes without settling
+	 * anything yet. Vertices are then settled one at a time, in order of
+	 * distance, by {@link #next()}, so a caller can stream results while the
+	 * search is still running.
+	 *
+	 * @param src   Dense id of starting vertex
+	 * @param modes Mask of allowed modes
+	 */
+	public void start(int src, long modes) {
+		if (++generation == 0) {
+			// stamps wrapped around, forget every old entry
+			for (int i = 0; i < stamp.length; i++)
+				stamp[i] = 0;
+			generation = 1;
+		}
+		pq.clear();
+		source = src;
+		this.modes = modes;
+		// skip the mode test when every mode of the snapshot is allowed
+		filtered = ((modes & g.modeMask()) != g.modeMask());
+		last = -1;
+		stamp[src] = generation;
+		dist[src] = 0;
+		parent[src] = -1;
+		pq.push(src, 0);
+	}
+
+	/**
+	 * Settles the next closest vertex of the search begun by
+	 * {@link #start(int, long)}. Its {@link #distance(int)} and
+	 * {@link #parent(int)} are final once it is returned.
+	 *
+	 * @return Dense id of the vertex settled, or -1 if every reachable vertex
+	 *         has been settled
+	 */
+	public int next() {
+		if (last >= 0)
+			relax(last);
+		if (pq.isEmpty())
+			return last = -1;
+		return last = pq.poll();
+	}
+
+	/**
+	 * Runs Dijkstra from src until dest is settled, or until the queue is
+	 * empty if dest is -1, relaxing only slots of the allowed modes.
+	 *
+	 * @param src   Dense id of starting vertex
+	 * @param dest  Dense id of destination vertex, or -1
+	 * @param modes Mask of allowed modes
+	 */
+	private void run(int src, int dest, long modes) {
+		start(src, modes);
+		int u;
+		do {
+			u = next();
+		} while (u != dest && u != -1);
+	}
+
+	/**
+	 * Relaxes every outgoing slot of the settled vertex u.
+	 *
+	 * @param u Dense id of vertex
+	 */
+	private void relax(int u) {
+		int du = dist[u];
+
+		// settled vertices never pass the distance check so no cloud is needed
+		for (int slot = g.outStart(u), end = g.outEnd(u); slot < end; slot++) {
+			if (filtered && !ModeDictionary.allows(modes, g.modeId(slot)))
+				continue;
+			int v = g.target(slot);
+			int dv = du + g.weight(slot);
+			if (stamp[v] != generation || dv < dist[v]) {
+				stamp[v] = generation;
+				dist[v] = dv;
+				parent[v] = slot;
+				pq.push(v, dv);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,357 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the shortest path trees of a few tracked origins current while the
+ * graph changes, updating only the part of each tree a change affects
+ * (Ramalingam and Reps).
+ *
+ * As a listener of the graph it handles each change as it happens:
+ * <ul>
+ * <li>a new or faster connection u-v can only improve v (or u, if
+ * undirected): the improvement is propagated Dijkstra style from there, and
+ * stops where it no longer shortens anything</li>
+ * <li>a removed or slower connection only matters if it is the tree edge of
+ * its endpoint: the subtree below it is cut off, each of its vertices is
+ * seeded with its best connection from outside the subtree, and Dijkstra is
+ * run inside the subtree only</li>
+ * </ul>
+ * Weights must not be negative. Each tracked tree costs an int and a
+ * reference per vertex of the graph.
+ *
+ * An instance is not thread-safe; the graph must be changed from one thread
+ * at a time.
+ *
+ * @author Minh Nguyen
+ */
+public class DynamicShortestPaths<V> implements GraphListener<V, Integer> {
+
+	/**
+	 * The shortest path tree of one tracked origin.
+	 */
+	private static class Tree<V> {
+		private Vertex<V> origin;
+		// distance of every vertex by id, Integer.MAX_VALUE if unreachable
+		private int[] dist;
+		// edge used to reach every vertex by id, null for the origin
+		private Edge<Integer>[] parent;
+
+		@SuppressWarnings("unchecked")
+		private Tree(Vertex<V> origin, int capacity) {
+			this.origin = origin;
+			dist = new int[capacity];
+			Arrays.fill(dist, Integer.MAX_VALUE);
+			parent = (Edge<Integer>[]) new Edge[capacity];
+		}
+	}
+
+	private AdjacencyListGraph<V, Integer> g;
+	private Map<Vertex<V>, Integer> ids = new HashMap<Vertex<V>, Integer>();
+	private List<Vertex<V>> vertices = new ArrayList<Vertex<V>>();
+	// ids of removed vertices, reused before new ones are handed out
+	private List<Integer> free = new ArrayList<Integer>();
+	private Map<Vertex<V>, Tree<V>> trees = new HashMap<Vertex<V>, Tree<V>>();
+	private IndexedMinHeap pq = new IndexedMinHeap(16);
+	// vertices cut off by the deletion being repaired
+	private boolean[] affected = new boolean[16];
+
+	/**
+	 * Constructs a maintainer of shortest path trees of g and registers it to
+	 * follow the changes to g. No origin is tracked yet.
+	 *
+	 * @param g Graph with non-negative weights
+	 */
+	public DynamicShortestPaths(AdjacencyListGraph<V, Integer> g) {
+		this.g = g;
+		for (Vertex<V> v : g.vertices())
+			vertexInserted(v);
+		g.addListener(this);
+	}
+
+	/**
+	 * Starts keeping the shortest path tree of origin current, computing it
+	 * from scratch once.
+	 *
+	 * @param origin Vertex to be tracked
+	 * @throws IllegalArgumentException if origin is not in the graph
+	 */
+	public void track(Vertex<V> origin) throws IllegalArgumentException {
+		Integer id = ids.get(origin);
+		if (id == null)
+			throw new IllegalArgumentException("Vertex is not in the graph");
+		if (trees.containsKey(origin))
+			return;
+		Tree<V> tree = new Tree<V>(origin, affected.length);
+		tree.dist[id] = 0;
+		pq.push(id, 0);
+		propagate(tree, false);
+		trees.put(origin, tree);
+	}
+
+	/**
+	 * Stops tracking origin.
+	 *
+	 * @param origin Vertex no longer tracked
+	 */
+	public void untrack(Vertex<V> origin) {
+		trees.remove(origin);
+	}
+
+	/**
+	 * Returns true if the tree of origin is being kept current.
+	 *
+	 * @param origin Vertex to be checked
+	 * @return true if origin is tracked
+	 */
+	public boolean isTracked(Vertex<V> origin) {
+		return trees.containsKey(origin);
+	}
+
+	/**
+	 * Returns the number of tracked origins.
+	 *
+	 * @return number of tracked trees
+	 */
+	public int size() {
+		return trees.size();
+	}
+
+	/**
+	 * Returns the distance from a tracked origin to dest.
+	 *
+	 * @param origin Tracked origin
+	 * @param dest   Destination vertex
+	 * @return distance, Integer.MAX_VALUE if dest can't be reached
+	 * @throws IllegalArgumentException if origin is not tracked or dest is
+	 *                                  not in the graph
+	 */
+	public int distance(Vertex<V> origin, Vertex<V> dest) throws IllegalArgumentException {
+		return tree(origin).dist[id(dest)];
+	}
+
+	/**
+	 * Returns the edges of the fastest route from a tracked origin to dest, in
+	 * travel order.
+	 *
+	 * @param origin Tracked origin
+	 * @param dest   Destination vertex
+	 * @return Edges of the route, or null if dest can't be reached
+	 * @throws IllegalArgumentException if origin is not tracked or dest is
+	 *                                  not in the graph
+	 */
+	public List<Edge<Integer>> route(Vertex<V> origin, Vertex<V> dest) throws IllegalArgumentException {
+		Tree<V> tree = tree(origin);
+		int v = id(dest);
+		if (tree.dist[v] == Integer.MAX_VALUE)
+			return null;
+		List<Edge<Integer>> edges = new ArrayList<Edge<Integer>>();
+		for (Vertex<V> x = dest; x != origin;) {
+			Edge<Integer> e = tree.parent[ids.get(x)];
+			edges.add(e);
+			x = g.opposite(x, e);
+		}
+		Collections.reverse(edges);
+		return edges;
+	}
+
+	@Override
+	public void vertexInserted(Vertex<V> v) {
+		int id;
+		if (free.isEmpty()) {
+			id = vertices.size();
+			vertices.add(v);
+		} else {
+			id = free.remove(free.size() - 1);
+			vertices.set(id, v);
+		}
+		ids.put(v, id);
+		if (vertices.size() > affected.length)
+			grow(vertices.size() * 2);
+	}
+
+	@Override
+	public void vertexRemoved(Vertex<V> v) {
+		// its edges were already reported, so no tree reaches it any more
+		trees.remove(v);
+		Integer id = ids.remove(v);
+		if (id != null) {
+			vertices.set(id, null);
+			free.add(id);
+		}
+	}
+
+	@Override
+	public void edgeInserted(Edge<Integer> e) {
+		for (Tree<V> tree : trees.values())
+			improve(tree, e);
+	}
+
+	@Override
+	public void edgeRemoved(Edge<Integer> e) {
+		for (Tree<V> tree : trees.values())
+			worsen(tree, e);
+	}
+
+	@Override
+	public void edgeReplaced(Edge<Integer> e, Integer old) {
+		for (Tree<V> tree : trees.values()) {
+			if (e.getElement() < old)
+				improve(tree, e);
+			else if (e.getElement() > old)
+				worsen(tree, e);
+		}
+	}
+
+	/**
+	 * Propagates a connection that is new or faster than before.
+	 *
+	 * @param tree Tree to be updated
+	 * @param e    Connection that improved
+	 */
+	private void improve(Tree<V> tree, Edge<Integer> e) {
+		Vertex<V>[] endpoints = g.endVertices(e);
+		int u = ids.get(endpoints[0]), v = ids.get(endpoints[1]);
+		relax(tree, u, v, e);
+		if (!g.isDirected(e))
+			relax(tree, v, u, e);
+		propagate(tree, false);
+	}
+
+	/**
+	 * Repairs the tree after a connection was removed or made slower.
+	 *
+	 * @param tree Tree to be updated
+	 * @param e    Connection that got worse
+	 */
+	private void worsen(Tree<V> tree, Edge<Integer> e) {
+		Vertex<V>[] endpoints = g.endVertices(e);
+		// only the endpoint reached through e can lose its distance
+		int root = -1;
+		if (tree.parent[ids.get(endpoints[1])] == e)
+			root = ids.get(endpoints[1]);
+		else if (tree.parent[ids.get(endpoints[0])] == e)
+			root = ids.get(endpoints[0]);
+		if (root < 0)
+			return;
+
+		// cut off the subtree below e
+		List<Integer> cut = new ArrayList<Integer>();
+		cut.add(root);
+		affected[root] = true;
+		for (int i = 0; i < cut.size(); i++) {
+			Vertex<V> x = vertices.get(cut.get(i));
+			for (Edge<Integer> f : g.outgoingEdges(x)) {
+				int y = ids.get(g.opposite(x, f));
+				if (tree.parent[y] == f && !affected[y]) {
+					affected[y] = true;
+					cut.add(y);
+				}
+			}
+		}
+		for (int y : cut) {
+			tree.dist[y] = Integer.MAX_VALUE;
+			tree.parent[y] = null;
+		}
+
+		// seed every cut vertex with its best connection from the rest of
+		// the tree, then settle the subtree
+		for (int y : cut) {
+			Vertex<V> x = vertices.get(y);
+			for (Edge<Integer> f : g.incomingEdges(x)) {
+				int z = ids.get(g.opposite(x, f));
+				if (!affected[z])
+					relax(tree, z, y, f);
+			}
+		}
+		propagate(tree, true);
+		for (int y : cut)
+			affected[y] = false;
+	}
+
+	/**
+	 * Shortens the distance of v through connection e from u, queueing v if
+	 * it improved.
+	 *
+	 * @param tree Tree to be updated
+	 * @param u    Id of the vertex e leaves
+	 * @param v    Id of the vertex e reaches
+	 * @param e    Connection from u to v
+	 */
+	private void relax(Tree<V> tree, int u, int v, Edge<Integer> e) {
+		if (tree.dist[u] == Integer.MAX_VALUE)
+			return;
+		int dv = tree.dist[u] + e.getElement();
+		if (dv < tree.dist[v]) {
+			tree.dist[v] = dv;
+			tree.parent[v] = e;
+			pq.push(v, dv);
+		}
+	}
+
+	/**
+	 * Runs Dijkstra from the queued vertices until nothing improves.
+	 *
+	 * @param tree       Tree to be updated
+	 * @param cutOffOnly True to relax only into affected vertices
+	 */
+	private void propagate(Tree<V> tree, boolean cutOffOnly) {
+		while (!pq.isEmpty()) {
+			int u = pq.poll();
+			Vertex<V> x = vertices.get(u);
+			for (Edge<Integer> f : g.outgoingEdges(x)) {
+				int v = ids.get(g.opposite(x, f));
+				if (!cutOffOnly || affected[v])
+					relax(tree, u, v, f);
+			}
+		}
+	}
+
+	/**
+	 * Returns the tree of a tracked origin.
+	 *
+	 * @param origin Tracked origin
+	 * @return Tree of origin
+	 * @throws IllegalArgumentException if origin is not tracked
+	 */
+	private Tree<V> tree(Vertex<V> origin) throws IllegalArgumentException {
+		Tree<V> tree = trees.get(origin);
+		if (tree == null)
+			throw new IllegalArgumentException("Origin is not tracked");
+		return tree;
+	}
+
+	/**
+	 * Returns the id of a vertex of the graph.
+	 *
+	 * @param v Vertex to be looked up
+	 * @return id of v
+	 * @throws IllegalArgumentException if v is not in the graph
+	 */
+	private int id(Vertex<V> v) throws IllegalArgumentException {
+		Integer id = ids.get(v);
+		if (id == null)
+			throw new IllegalArgumentException("Vertex is not in the graph");
+		return id;
+	}
+
+	/**
+	 * Grows every per-vertex array to hold {@code capacity} vertices.
+	 *
+	 * @param capacity New number of ids
+	 */
+	private void grow(int capacity) {
+		affected = Arrays.copyOf(affected, capacity);
+		pq = new IndexedMinHeap(capacity);
+		for (Tree<V> tree : trees.values()) {
+			int old = tree.dist.length;
+			tree.dist = Arrays.copyOf(tree.dist, capacity);
+			Arrays.fill(tree.dist, old, capacity, Integer.MAX_VALUE);
+			tree.parent = Arrays.copyOf(tree.parent, capacity);
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Receives a call after each change made to an {@link AdjacencyListGraph}.
+ * Removing a vertex first reports the removal of each of its edges.
+ * 
+ * @author Minh Nguyen
+ */
+public interface GraphListener<V, E> {
+	/**
+	 * Called after a vertex is inserted.
+	 * 
+	 * @param v Vertex that was inserted
+	 */
+	public void vertexInserted(Vertex<V> v);
+
+	/**
+	 * Called after a vertex, and all of its edges, is removed.
+	 * 
+	 * @param v Vertex that was removed
+	 */
+	public void vertexRemoved(Vertex<V> v);
+
+	/**
+	 * Called after a new edge is inserted.
+	 * 
+	 * @param e Edge that was inserted
+	 */
+	public void edgeInserted(Edge<E> e);
+
+	/**
+	 * Called after an edge is removed. Its endpoints are still available
+	 * through {@link Graph#endVertices(Edge)}.
+	 * 
+	 * @param e Edge that was removed
+	 */
+	public void edgeRemoved(Edge<E> e);
+
+	/**
+	 * Called after the element of an edge is replaced.
+	 * 
+	 * @param e Edge whose element was replaced
+	 * @param old Element the edge held before
+	 */
+	public void edgeReplaced(Edge<E> e, E old);
+}
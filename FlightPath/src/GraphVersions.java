@@ -0,0 +1,206 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Publishes immutable versions of an {@link AdjacencyListGraph} so route
+ * queries never block on, or see half of, a change to the graph.
+ *
+ * Writers change the graph and then publish it as a new {@link Version}, a
+ * {@link CompactGraph} snapshot taken under the writer lock. Readers pin the
+ * current version without taking any lock, query it for as long as they
+ * like, and release it. A version stays usable while it is pinned even if
+ * newer versions have been published since; once it is no longer current
+ * and its last reader releases it, the version drops its snapshot so the
+ * memory can be reclaimed.
+ *
+ * Only writers share a lock. Changes made directly on the graph instead of
+ * through {@link #update(Consumer)} must come from the thread that calls
+ * {@link #publish()}, unless the graph is a
+ * {@link ConcurrentAdjacencyListGraph}.
+ *
+ * @author Minh Nguyen
+ */
+public class GraphVersions<V> {
+
+	/**
+	 * One published version of the graph.
+	 */
+	public static class Version<V> {
+		private long number;
+		private long epoch;
+		private volatile CompactGraph<V> graph;
+		// readers plus one for being the current version, 0 once reclaimed
+		private AtomicInteger pins = new AtomicInteger(1);
+		private AtomicInteger live;
+
+		/**
+		 * Constructs a version holding a snapshot taken at {@code epoch}.
+		 *
+		 * @param number Sequence number of the version
+		 * @param epoch  Epoch of the graph the snapshot was taken at
+		 * @param graph  Snapshot of the graph
+		 * @param live   Counter of versions not yet reclaimed
+		 */
+		private Version(long number, long epoch, CompactGraph<V> graph, AtomicInteger live) {
+			this.number = number;
+			this.epoch = epoch;
+			this.graph = graph;
+			this.live = live;
+			live.incrementAndGet();
+		}
+
+		/**
+		 * Returns the sequence number of the version; later versions have
+		 * larger numbers.
+		 *
+		 * @return version number
+		 */
+		public long getNumber() {
+			return number;
+		}
+
+		/**
+		 * Returns the snapshot of this version.
+		 *
+		 * @return Snapshot of the graph
+		 * @throws IllegalStateException if the version was already reclaimed
+		 */
+		public CompactGraph<V> getGraph() throws IllegalStateException {
+			CompactGraph<V> snapshot = graph;
+			if (snapshot == null)
+				throw new IllegalStateException("Version was released");
+			return snapshot;
+		}
+
+		/**
+		 * Releases a pin taken by {@link GraphVersions#pin()}. The version
+		 * must not be used by the caller afterwards.
+		 */
+		public void release() {
+			if (pins.decrementAndGet() == 0) {
+				graph = null;
+				live.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Adds a pin unless the version has already been reclaimed.
+		 *
+		 * @return true if the version was pinned
+		 */
+		private boolean acquire() {
+			while (true) {
+				int count = pins.get();
+				if (count == 0)
+					return false;
+				if (pins.compareAndSet(count, count + 1))
+					return true;
+			}
+		}
+	}
+
+	private AdjacencyListGraph<V, Integer> g;
+	private ReentrantLock writer = new ReentrantLock();
+	private AtomicReference<Version<V>> current = new AtomicReference<Version<V>>();
+	private AtomicInteger live = new AtomicInteger();
+
+	/**
+	 * Constructs the versions of g and publishes its current state as the
+	 * first version.
+	 *
+	 * @param g Graph to be published
+	 */
+	public GraphVersions(AdjacencyListGraph<V, Integer> g) {
+		this.g = g;
+		current.set(new Version<V>(0, g.getEpoch(), snapshot(), live));
+	}
+
+	/**
+	 * Returns the graph written to. Readers must use a pinned version
+	 * instead.
+	 *
+	 * @return Graph being versioned
+	 */
+	public AdjacencyListGraph<V, Integer> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Pins and returns the current version. The caller must
+	 * {@link Version#release() release} it when done.
+	 *
+	 * @return Current version, pinned
+	 */
+	public Version<V> pin() {
+		while (true) {
+			Version<V> version = current.get();
+			// fails only if the version was replaced and released meanwhile
+			if (version.acquire())
+				return version;
+		}
+	}
+
+	/**
+	 * Applies a batch of changes to the graph under the writer lock and
+	 * publishes the result as one new version.
+	 *
+	 * @param change Changes to be made to the graph
+	 * @return Version holding the changes
+	 */
+	public Version<V> update(Consumer<? super AdjacencyListGraph<V, Integer>> change) {
+		writer.lock();
+		try {
+			change.accept(g);
+			return publish();
+		} finally {
+			writer.unlock();
+		}
+	}
+
+	/**
+	 * Publishes the graph as a new version if it changed since the current
+	 * version was taken. The version returned is not pinned.
+	 *
+	 * @return Current version
+	 */
+	public Version<V> publish() {
+		writer.lock();
+		try {
+			Version<V> old = current.get();
+			if (old.epoch == g.getEpoch())
+				return old;
+			Version<V> next = new Version<V>(old.number + 1, g.getEpoch(), snapshot(), live);
+			current.set(next);
+			// drop the pin held for being current
+			old.release();
+			return next;
+		} finally {
+			writer.unlock();
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the graph. A concurrent graph is held still while
+	 * it is copied, since its own writers don't take the writer lock.
+	 *
+	 * @return Snapshot of the graph
+	 */
+	private CompactGraph<V> snapshot() {
+		if (g instanceof ConcurrentAdjacencyListGraph)
+			return ((ConcurrentAdjacencyListGraph<V, Integer>) g).atomically(() -> new CompactGraph<V>(g));
+		return new CompactGraph<V>(g);
+	}
+
+	/**
+	 * Returns the number of versions whose snapshot has not been reclaimed
+	 * yet: the current one plus older ones still pinned by readers.
+	 *
+	 * @return number of live versions
+	 */
+	public int liveVersions() {
+		return live.get();
+	}
+
+}
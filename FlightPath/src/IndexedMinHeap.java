@@ -0,0 +1,175 @@
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of integer ids {@code 0..capacity-1} keyed by primitive
+ * {@code int} priorities. The heap remembers where every id is stored, so
+ * membership tests are O(1) and decreasing the key of an id already in the
+ * heap is O(log n), without the linear scan of
+ * {@link java.util.PriorityQueue#remove(Object)}.
+ *
+ * @author Minh Nguyen
+ */
+public class IndexedMinHeap {
+
+	private int[] heap; // ids in heap order
+	private int[] pos; // index of each id in heap, -1 if absent
+	private int[] keys; // key of each id
+	private int size = 0;
+
+	/**
+	 * Constructs an empty heap that can hold ids {@code 0..capacity-1}.
+	 *
+	 * @param capacity Number of distinct ids
+	 */
+	public IndexedMinHeap(int capacity) {
+		heap = new int[capacity];
+		pos = new int[capacity];
+		keys = new int[capacity];
+		for (int i = 0; i < capacity; i++)
+			pos[i] = -1;
+	}
+
+	/**
+	 * Returns the number of ids in the heap.
+	 *
+	 * @return integer size of heap
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks if heap is empty.
+	 *
+	 * @return True if empty, false otherwise.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Checks if {@code id} is currently in the heap.
+	 *
+	 * @param id Id to be checked
+	 * @return True if id is in the heap, false otherwise
+	 */
+	public boolean contains(int id) {
+		return pos[id] >= 0;
+	}
+
+	/**
+	 * Returns the key of {@code id}. Only meaningful while id is in the heap.
+	 *
+	 * @param id Id to be checked
+	 * @return key of id
+	 */
+	public int key(int id) {
+		return keys[id];
+	}
+
+	/**
+	 * Returns the key of the minimum id without removing it.
+	 *
+	 * @return smallest key in the heap
+	 * @throws NoSuchElementException if heap is empty
+	 */
+	public int minKey() throws NoSuchElementException {
+		if (size == 0)
+			throw new NoSuchElementException("Heap is empty");
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Inserts {@code id} with {@code key}, or lowers its key if it is already
+	 * in the heap and {@code key} is smaller. A larger key for an id already
+	 * in the heap is ignored.
+	 *
+	 * @param id  Id to be inserted
+	 * @param key Priority of id
+	 */
+	public void push(int id, int key) {
+		int i = pos[id];
+		if (i < 0) {
+			i = size++;
+			heap[i] = id;
+			pos[id] = i;
+		} else if (key >= keys[id]) {
+			return;
+		}
+		keys[id] = key;
+		siftUp(i);
+	}
+
+	/**
+	 * Removes and returns the id with the smallest key.
+	 *
+	 * @return id with smallest key
+	 * @throws NoSuchElementException if heap is empty
+	 */
+	public int poll() throws NoSuchElementException {
+		if (size == 0)
+			throw new NoSuchElementException("Heap is empty");
+		int min = heap[0];
+		pos[min] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	/**
+	 * Removes every id from the heap in O(size).
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			pos[heap[i]] = -1;
+		size = 0;
+	}
+
+	/**
+	 * Moves the id at heap index i up until its parent is not larger.
+	 *
+	 * @param i Heap index
+	 */
+	private void siftUp(int i) {
+		int id = heap[i];
+		int key = keys[id];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[heap[parent]] <= key)
+				break;
+			heap[i] = heap[parent];
+			pos[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = id;
+		pos[id] = i;
+	}
+
+	/**
+	 * Moves the id at heap index i down until no child is smaller.
+	 *
+	 * @param i Heap index
+	 */
+	private void siftDown(int i) {
+		int id = heap[i];
+		int key = keys[id];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+				child++;
+			if (key <= keys[heap[child]])
+				break;
+			heap[i] = heap[child];
+			pos[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = id;
+		pos[id] = i;
+	}
+
+}
@@ -0,0 +1,58 @@
+/**
+ * A graph whose vertices are numbered by dense ids {@code 0..n-1} and whose
+ * connections, held in numbered slots, have primitive {@code int} weights.
+ * Unlike {@link Graph}, nothing is boxed: a search over it can keep every
+ * distance in an int array and allocate nothing per relaxation. The
+ * connections of vertex u are the slots from {@link #outStart(int)} to
+ * {@link #outEnd(int)}.
+ * 
+ * @author Minh Nguyen
+ */
+public interface IntWeightedGraph {
+	/**
+	 * Returns the number of vertices.
+	 * 
+	 * @return integer corresponding to amount of vertices
+	 */
+	public int numVertices();
+
+	/**
+	 * Returns the number of outgoing slots. An undirected edge fills one
+	 * slot from each endpoint.
+	 * 
+	 * @return integer corresponding to amount of slots
+	 */
+	public int numSlots();
+
+	/**
+	 * Returns the first outgoing slot of vertex u.
+	 * 
+	 * @param u Dense id of vertex
+	 * @return first slot of u
+	 */
+	public int outStart(int u);
+
+	/**
+	 * Returns one past the last outgoing slot of vertex u.
+	 * 
+	 * @param u Dense id of vertex
+	 * @return end of the slot range of u
+	 */
+	public int outEnd(int u);
+
+	/**
+	 * Returns the vertex reached by slot {@code slot}.
+	 * 
+	 * @param slot Outgoing slot
+	 * @return Dense id of the target vertex
+	 */
+	public int target(int slot);
+
+	/**
+	 * Returns the weight of slot {@code slot}.
+	 * 
+	 * @param slot Outgoing slot
+	 * @return weight of the connection
+	 */
+	public int weight(int slot);
+}
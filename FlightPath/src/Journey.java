@@ -0,0 +1,93 @@
+/**
+ * A journey found by {@link ConnectionScan}: its departure and arrival times
+ * and the connections it takes, each either a slot of a {@link CompactGraph}
+ * or a scheduled connection of a {@link Timetable}.
+ *
+ * @author Minh Nguyen
+ */
+public class Journey<V> {
+
+	private CompactGraph<V> graph;
+	private Timetable<V> timetable;
+	private int departure;
+	private int arrival;
+	// a slot of graph if not negative, else -(i + 1) for the i-th scheduled
+	// connection of timetable
+	private int[] legs;
+
+	/**
+	 * Constructs a journey.
+	 *
+	 * @param graph     Snapshot the slots belong to
+	 * @param timetable Timetable the scheduled connections belong to
+	 * @param departure Departure time in minutes after midnight
+	 * @param arrival   Arrival time in minutes after midnight
+	 * @param legs      Connections in travel order
+	 */
+	public Journey(CompactGraph<V> graph, Timetable<V> timetable, int departure, int arrival, int[] legs) {
+		this.graph = graph;
+		this.timetable = timetable;
+		this.departure = departure;
+		this.arrival = arrival;
+		this.legs = legs;
+	}
+
+	/**
+	 * Returns the time the journey may start at.
+	 *
+	 * @return departure time in minutes after midnight
+	 */
+	public int getDeparture() {
+		return departure;
+	}
+
+	/**
+	 * Returns the time the journey reaches its destination.
+	 *
+	 * @return arrival time in minutes after midnight
+	 */
+	public int getArrival() {
+		return arrival;
+	}
+
+	/**
+	 * Returns the time from departure to arrival, waits included.
+	 *
+	 * @return total time in minutes
+	 */
+	public int getTotal() {
+		return arrival - departure;
+	}
+
+	/**
+	 * Returns the number of connections in the journey.
+	 *
+	 * @return number of connections
+	 */
+	public int size() {
+		return legs.length;
+	}
+
+	/**
+	 * Returns true if the i-th connection is a scheduled one.
+	 *
+	 * @param i Index of connection, starting at 0
+	 * @return true if the connection is in the timetable
+	 */
+	public boolean isScheduled(int i) {
+		return legs[i] < 0;
+	}
+
+	/**
+	 * Represents the i-th connection, "[String] [String] [int] [String]" for
+	 * an unscheduled one and "[String] [String] [int] [String] [HHMM]" for a
+	 * scheduled one.
+	 *
+	 * @param i Index of connection, starting at 0
+	 * @return String representation of the connection
+	 */
+	public String describe(int i) {
+		return (legs[i] >= 0 ? graph.describe(legs[i]) : timetable.describe(-legs[i] - 1));
+	}
+
+}
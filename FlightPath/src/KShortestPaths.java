@@ -0,0 +1,299 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Yen's algorithm for the K fastest loopless routes between two vertices of a
+ * {@link CompactGraph}.
+ *
+ * Each further route deviates from an earlier one at some spur vertex: the
+ * earlier route is followed up to the spur (the root), and from there the
+ * fastest route is searched that avoids the root and the connections other
+ * known routes with the same root take next. Instead of a full Dijkstra per
+ * spur vertex, the searches share work:
+ * <ul>
+ * <li>one backward Dijkstra from the destination gives the exact distance of
+ * every vertex to it in the full graph, a consistent lower bound for every
+ * spur search, which then runs as A* and only expands vertices that lead
+ * towards the destination</li>
+ * <li>only the routes still needed are kept as candidates, so a spur whose
+ * root plus bound can't beat the worst of them is skipped without a
+ * search</li>
+ * <li>every search reuses the same arrays and heap, reset by a generation
+ * stamp</li>
+ * </ul>
+ *
+ * An instance is not thread-safe.
+ *
+ * @author Minh Nguyen
+ */
+public class KShortestPaths<V> {
+
+	/**
+	 * A route as its total weight and slots, compared by weight and then by
+	 * the order candidates were found.
+	 */
+	private static class Path implements Comparable<Path> {
+		private int total;
+		private int[] slots;
+		private long order;
+
+		private Path(int total, int[] slots, long order) {
+			this.total = total;
+			this.slots = slots;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(Path other) {
+			if (total != other.total)
+				return Integer.compare(total, other.total);
+			return Long.compare(order, other.order);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return (other instanceof Path && Arrays.equals(slots, ((Path) other).slots));
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(slots);
+		}
+	}
+
+	private CompactGraph<V> g;
+	// distance of every vertex to the destination of the last bound
+	private int[] toDest;
+	private int boundDest = -1;
+	private int[] dist, parent, stamp;
+	private int generation = 0;
+	// vertices of the root, which a spur search must not enter
+	private int[] banned;
+	private int banGeneration = 0;
+	private IndexedMinHeap pq;
+	private long found = 0;
+
+	/**
+	 * Constructs a K shortest paths search over {@code g}.
+	 *
+	 * @param g Snapshot to be searched
+	 */
+	public KShortestPaths(CompactGraph<V> g) {
+		this.g = g;
+		int n = g.numVertices();
+		toDest = new int[n];
+		dist = new int[n];
+		parent = new int[n];
+		stamp = new int[n];
+		banned = new int[n];
+		pq = new IndexedMinHeap(n);
+	}
+
+	/**
+	 * Returns the snapshot this search runs on.
+	 *
+	 * @return Snapshot of the search
+	 */
+	public CompactGraph<V> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Returns up to k fastest routes from src to dest that visit no vertex
+	 * twice, fastest first. Routes of equal weight are returned in the order
+	 * they were found.
+	 *
+	 * @param src  Dense id of starting vertex
+	 * @param dest Dense id of destination vertex
+	 * @param k    Number of routes wanted
+	 * @return Routes from src to dest, empty if dest can't be reached
+	 * @throws IllegalArgumentException if k is not positive
+	 */
+	public List<Route<V>> routes(int src, int dest, int k) throws IllegalArgumentException {
+		if (k < 1)
+			throw new IllegalArgumentException("k must be positive");
+		List<Route<V>> routes = new ArrayList<Route<V>>();
+		bound(dest);
+		unbanAll();
+		Path first = search(src, dest, 0, null, 0, null);
+		if (first == null)
+			return routes;
+
+		List<Path> accepted = new ArrayList<Path>();
+		Set<Path> seen = new HashSet<Path>();
+		TreeSet<Path> candidates = new TreeSet<Path>();
+		accepted.add(first);
+		seen.add(first);
+		// grown as routes are accepted, as k itself may be huge
+		int[] bannedSlots = new int[16];
+		while (accepted.size() < k) {
+			Path previous = accepted.get(accepted.size() - 1);
+			int needed = k - accepted.size();
+			unbanAll();
+			int spur = src;
+			int rootTotal = 0;
+			for (int i = 0; i < previous.slots.length; i++) {
+				// skip a spur that can't beat the routes already waiting
+				boolean hopeless = (candidates.size() >= needed
+						&& (long) rootTotal + toDest[spur] >= candidates.last().total);
+				if (!hopeless) {
+					// the next connection of every known route sharing this root
+					if (bannedSlots.length < accepted.size())
+						bannedSlots = Arrays.copyOf(bannedSlots, accepted.size() * 2);
+					int bans = 0;
+					for (Path path : accepted)
+						if (path.slots.length > i && sameRoot(path, previous, i))
+							bannedSlots[bans++] = path.slots[i];
+					Path candidate = search(spur, dest, rootTotal, bannedSlots, bans,
+							Arrays.copyOf(previous.slots, i));
+					if (candidate != null && seen.add(candidate)) {
+						candidates.add(candidate);
+						// only the fastest still needed can ever be accepted
+						if (candidates.size() > needed)
+							seen.remove(candidates.pollLast());
+					}
+				}
+				banned[spur] = banGeneration;
+				rootTotal += g.weight(previous.slots[i]);
+				spur = g.target(previous.slots[i]);
+			}
+			if (candidates.isEmpty())
+				break;
+			accepted.add(candidates.pollFirst());
+		}
+
+		for (Path path : accepted)
+			routes.add(new Route<V>(g, path.total, path.slots));
+		return routes;
+	}
+
+	/**
+	 * Computes the distance of every vertex to dest with one backward
+	 * Dijkstra over the incoming connections, unless dest is unchanged.
+	 *
+	 * @param dest Dense id of destination vertex
+	 */
+	private void bound(int dest) {
+		if (dest == boundDest)
+			return;
+		Arrays.fill(toDest, Integer.MAX_VALUE);
+		pq.clear();
+		toDest[dest] = 0;
+		pq.push(dest, 0);
+		while (!pq.isEmpty()) {
+			int v = pq.poll();
+			for (int j = g.inStart(v), end = g.inEnd(v); j < end; j++) {
+				int u = g.inSource(j);
+				int du = toDest[v] + g.inWeight(j);
+				if (du < toDest[u]) {
+					toDest[u] = du;
+					pq.push(u, du);
+				}
+			}
+		}
+		boundDest = dest;
+	}
+
+	/**
+	 * Lifts the ban on every vertex in O(1).
+	 */
+	private void unbanAll() {
+		if (++banGeneration == 0) {
+			// stamps wrapped around, forget every old ban
+			Arrays.fill(banned, 0);
+			banGeneration = 1;
+		}
+	}
+
+	/**
+	 * Returns true if a and b take the same first {@code length} slots.
+	 */
+	private static boolean sameRoot(Path a, Path b, int length) {
+		for (int i = 0; i < length; i++)
+			if (a.slots[i] != b.slots[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Finds the fastest route from spur to dest by A* on the bounds, avoiding
+	 * banned vertices and the given slots out of spur, and joins it to the
+	 * root.
+	 *
+	 * @param spur        Dense id of the vertex the search starts at
+	 * @param dest        Dense id of destination vertex
+	 * @param rootTotal   Weight of the root
+	 * @param bannedSlots Slots out of spur not to be taken, or null
+	 * @param bans        Number of banned slots
+	 * @param root        Slots from src to spur, or null for none
+	 * @return Root joined with the spur route, or null if there is none
+	 */
+	private Path search(int spur, int dest, int rootTotal, int[] bannedSlots, int bans, int[] root) {
+		if (toDest[spur] == Integer.MAX_VALUE)
+			return null;
+		if (++generation == 0) {
+			// stamps wrapped around, forget every old entry
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		pq.clear();
+		stamp[spur] = generation;
+		dist[spur] = 0;
+		parent[spur] = -1;
+		pq.push(spur, toDest[spur]);
+
+		while (!pq.isEmpty()) {
+			int u = pq.poll();
+			if (u == dest)
+				return join(spur, dest, rootTotal, root);
+			int du = dist[u];
+			for (int slot = g.outStart(u), end = g.outEnd(u); slot < end; slot++) {
+				int v = g.target(slot);
+				if (banned[v] == banGeneration || toDest[v] == Integer.MAX_VALUE)
+					continue;
+				if (u == spur && isBanned(slot, bannedSlots, bans))
+					continue;
+				int dv = du + g.weight(slot);
+				if (stamp[v] != generation || dv < dist[v]) {
+					stamp[v] = generation;
+					dist[v] = dv;
+					parent[v] = slot;
+					pq.push(v, dv + toDest[v]);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if slot is one of the first {@code bans} banned slots.
+	 */
+	private static boolean isBanned(int slot, int[] bannedSlots, int bans) {
+		for (int i = 0; i < bans; i++)
+			if (bannedSlots[i] == slot)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Joins the root to the route from spur to dest left by the last search.
+	 */
+	private Path join(int spur, int dest, int rootTotal, int[] root) {
+		int rootLength = (root == null ? 0 : root.length);
+		int length = rootLength;
+		for (int v = dest; v != spur; v = g.tail(parent[v]))
+			length++;
+		int[] slots = new int[length];
+		if (root != null)
+			System.arraycopy(root, 0, slots, 0, rootLength);
+		int i = length;
+		for (int v = dest; v != spur; v = g.tail(parent[v]))
+			slots[--i] = parent[v];
+		return new Path(rootTotal + dist[dest], slots, found++);
+	}
+
+}
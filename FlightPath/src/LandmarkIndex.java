@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/**
+ * Landmark distance tables for A* search with the ALT (A*, landmarks,
+ * triangle inequality) lower bounds. For each landmark L the index stores
+ * d(L, v) and d(v, L) for every vertex v of a {@link CompactGraph}, so that
+ *
+ * <pre>
+ * d(v, t) &gt;= d(L, t) - d(L, v)
+ * d(v, t) &gt;= d(v, L) - d(t, L)
+ * </pre>
+ *
+ * give a lower bound on the remaining distance to t from any vertex.
+ *
+ * Landmarks are chosen by farthest-point selection: each new landmark is the
+ * vertex furthest from all landmarks chosen so far. The tables belong to one
+ * snapshot; when the graph changes, {@link #refresh(CompactGraph)} reuses the
+ * landmark airports still present, recomputes the distances and tops the
+ * landmarks back up to the number asked for.
+ *
+ * @author Minh Nguyen
+ */
+public class LandmarkIndex<V> {
+
+	private static final int INF = Integer.MAX_VALUE;
+
+	private CompactGraph<V> g;
+	// landmarks asked for, more than chosen while the graph is too small
+	private int requested;
+	private int[] landmarks;
+	// d(L_i, v) and d(v, L_i), stored at v * k + i
+	private int[] from;
+	private int[] to;
+
+	/**
+	 * Builds an index over {@code g} with up to k landmarks.
+	 *
+	 * @param g Snapshot to be indexed
+	 * @param k Number of landmarks
+	 * @throws IllegalArgumentException if k is not positive
+	 */
+	public LandmarkIndex(CompactGraph<V> g, int k) throws IllegalArgumentException {
+		if (k <= 0)
+			throw new IllegalArgumentException("Need at least one landmark");
+		this.g = g;
+		this.requested = k;
+		choose(new int[0]);
+	}
+
+	/**
+	 * Builds an index over {@code g} that keeps the given landmark vertices
+	 * and chooses more up to the requested number.
+	 *
+	 * @param g         Snapshot to be indexed
+	 * @param kept      Dense ids of landmark vertices to keep
+	 * @param requested Number of landmarks asked for
+	 */
+	private LandmarkIndex(CompactGraph<V> g, int[] kept, int requested) {
+		this.g = g;
+		this.requested = requested;
+		choose(kept);
+	}
+
+	/**
+	 * Returns an index over a newer snapshot that keeps the landmarks of this
+	 * index still present in {@code next} and chooses fresh ones for those
+	 * removed, or for those the graph was too small for before.
+	 *
+	 * @param next Newer snapshot of the same graph
+	 * @return Index over next
+	 */
+	public LandmarkIndex<V> refresh(CompactGraph<V> next) {
+		int[] kept = new int[landmarks.length];
+		int count = 0;
+		for (int l : landmarks) {
+			// a snapshot read from a file has no vertices, match it by element
+			int id = (g.vertex(l) != null ? next.indexOf(g.vertex(l)) : next.find(g.element(l)));
+			if (id >= 0)
+				kept[count++] = id;
+		}
+		int[] ids = new int[count];
+		System.arraycopy(kept, 0, ids, 0, count);
+		return new LandmarkIndex<V>(next, ids, requested);
+	}
+
+	/**
+	 * Returns the snapshot this index belongs to.
+	 *
+	 * @return Snapshot of the index
+	 */
+	public CompactGraph<V> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Returns the number of landmarks.
+	 *
+	 * @return number of landmarks
+	 */
+	public int size() {
+		return landmarks.length;
+	}
+
+	/**
+	 * Returns the dense id of the i-th landmark.
+	 *
+	 * @param i Index of landmark
+	 * @return Dense id of landmark vertex
+	 */
+	public int landmark(int i) {
+		return landmarks[i];
+	}
+
+	/**
+	 * Returns a lower bound on the distance from v to t.
+	 *
+	 * @param v Dense id of vertex
+	 * @param t Dense id of target vertex
+	 * @return lower bound on d(v, t), never negative
+	 */
+	public int lowerBound(int v, int t) {
+		int k = landmarks.length;
+		int best = 0;
+		for (int i = 0, vi = v * k, ti = t * k; i < k; i++, vi++, ti++) {
+			// d(L, t) - d(L, v), needs L to reach v
+			int lt = from[ti], lv = from[vi];
+			if (lv != INF && lt != INF && lt - lv > best)
+				best = lt - lv;
+			// d(v, L) - d(t, L), needs t to reach L
+			int vl = to[vi], tl = to[ti];
+			if (tl != INF && vl != INF && vl - tl > best)
+				best = vl - tl;
+		}
+		return best;
+	}
+
+	/**
+	 * Takes the kept landmarks, then chooses more by farthest-point
+	 * selection until there are as many as requested or every vertex is a
+	 * landmark, and fills in the distance tables.
+	 *
+	 * @param kept Dense ids of landmark vertices to keep
+	 */
+	private void choose(int[] kept) {
+		int n = g.numVertices();
+		int k = Math.max(kept.length, Math.min(requested, n));
+		int[] chosen = new int[k];
+		int[] fromAll = new int[k * n];
+		int[] toAll = new int[k * n];
+
+		// closest landmark distance of every vertex; without kept landmarks
+		// the first one is the vertex furthest from vertex 0
+		int[] nearest;
+		if (kept.length > 0) {
+			nearest = new int[n];
+			Arrays.fill(nearest, INF);
+		} else
+			nearest = (n > 0 ? sweep(0, true) : new int[0]);
+		int count = 0;
+		while (count < k) {
+			int next;
+			if (count < kept.length)
+				next = kept[count];
+			else {
+				next = -1;
+				for (int v = 0; v < n; v++)
+					if (nearest[v] > 0 && (next < 0 || nearest[v] > nearest[next]))
+						next = v;
+				// every vertex is already a landmark
+				if (next < 0)
+					break;
+			}
+			chosen[count] = next;
+			int[] f = sweep(next, true);
+			int[] t = sweep(next, false);
+			for (int v = 0; v < n; v++) {
+				fromAll[v * k + count] = f[v];
+				toAll[v * k + count] = t[v];
+				nearest[v] = Math.min(nearest[v], f[v]);
+			}
+			nearest[next] = 0;
+			count++;
+		}
+
+		landmarks = new int[count];
+		System.arraycopy(chosen, 0, landmarks, 0, count);
+		from = compact(fromAll, n, k, count);
+		to = compact(toAll, n, k, count);
+	}
+
+	/**
+	 * Returns the distance from src to every vertex (forward) or from every
+	 * vertex to src (backward), with Integer.MAX_VALUE for no path.
+	 *
+	 * @param src     Dense id of vertex
+	 * @param forward true to follow outgoing slots, false for incoming
+	 * @return Array of distances
+	 */
+	private int[] sweep(int src, boolean forward) {
+		int n = g.numVertices();
+		int[] d = new int[n];
+		for (int v = 0; v < n; v++)
+			d[v] = INF;
+		IndexedMinHeap pq = new IndexedMinHeap(n);
+		d[src] = 0;
+		pq.push(src, 0);
+		while (!pq.isEmpty()) {
+			int u = pq.poll();
+			if (forward) {
+				for (int slot = g.outStart(u), end = g.outEnd(u); slot < end; slot++) {
+					int v = g.target(slot);
+					if (d[u] + g.weight(slot) < d[v]) {
+						d[v] = d[u] + g.weight(slot);
+						pq.push(v, d[v]);
+					}
+				}
+			} else {
+				for (int j = g.inStart(u), end = g.inEnd(u); j < end; j++) {
+					int v = g.inSource(j);
+					if (d[u] + g.inWeight(j) < d[v]) {
+						d[v] = d[u] + g.inWeight(j);
+						pq.push(v, d[v]);
+					}
+				}
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Copies a table built for k landmarks into one for the count actually
+	 * chosen.
+	 *
+	 * @param table Table of n * k entries
+	 * @param n     Number of vertices
+	 * @param k     Landmarks the table was sized for
+	 * @param count Landmarks actually chosen
+	 * @return Table of n * count entries
+	 */
+	private static int[] compact(int[] table, int n, int k, int count) {
+		if (count == k)
+			return table;
+		int[] result = new int[n * count];
+		for (int v = 0; v < n; v++)
+			System.arraycopy(table, v * k, result, v * count, count);
+		return result;
+	}
+
+}
@@ -1,21 +1,142 @@
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Comparator;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public class Main {
 
 	public static void main(String[] args) throws IOException {
 		// Airport names cannot have spaces
+
+		// Routing engine used for ? YYZ LAX (-engine dijkstra|bidirectional|alt|ch)
+		String engineName = "dijkstra";
+		// Landmarks used by the alt engine
+		int landmarkCount = 8;
+		// Routes kept by the route cache (0 keeps none)
+		int cacheSize = 1024;
+		// Megabytes of shortest path trees kept for hot origins
+		int treeMegabytes = 64;
+		// Recorded query log used to find hot origins before the first query
+		String warmLog = null;
+		// Connection file loaded before the first command
+		String loadFile = null;
+		// Binary snapshot restored at startup and saved on exit
+		String snapshotFile = null;
+		// Write-ahead log of every change made since the snapshot
+		String walFile = null;
+		// Megabytes of log after which it is folded into a new snapshot
+		int compactMegabytes = 64;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-engine"))
+				engineName = args[i + 1];
+			else if (args[i].equals("-landmarks"))
+				landmarkCount = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-cache"))
+				cacheSize = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-trees"))
+				treeMegabytes = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-warm"))
+				warmLog = args[i + 1];
+			else if (args[i].equals("-load"))
+				loadFile = args[i + 1];
+			else if (args[i].equals("-snapshot"))
+				snapshotFile = args[i + 1];
+			else if (args[i].equals("-wal"))
+				walFile = args[i + 1];
+			else if (args[i].equals("-compact"))
+				compactMegabytes = Integer.parseInt(args[i + 1]);
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		if (walFile != null && snapshotFile == null)
+			throw new IllegalArgumentException("-wal needs a -snapshot to compact into");
+		// fail on a bad engine name before reading any command
+		newEngine(engineName, new CompactGraph<String>(new AdjacencyListGraph<String, Integer>()), null,
+				landmarkCount);
 		
 		// Graph
 		AdjacencyListGraph<String, Integer> g = new AdjacencyListGraph<>(false);
-		// Holds a Map with keys being name of airports and value being the Vertex of each airport
-		Map<String, Vertex<String>> airports = new HashMap<String, Vertex<String>>();
+		// Dictionary of the airports of g by code, kept up to date by g
+		AirportDictionary airports = new AirportDictionary(g);
+		// Scheduled connections, added by + YYZ JFK 120 plane 0930
+		Timetable<String> timetable = new Timetable<String>();
+		// Snapshot restored from the -snapshot file. ? YYZ LAX is routed on it
+		// directly; the graph is only built from it once another command
+		// needs the graph itself
+		CompactGraph<String> restored = null;
+		if (snapshotFile != null && new File(snapshotFile).exists())
+			restored = SnapshotFile.read(snapshotFile);
+		// Log of the changes made since the snapshot, replayed on top of it
+		MutationLog wal = null;
+		if (walFile != null) {
+			wal = new MutationLog(walFile, (restored != null ? SnapshotFile.segment(snapshotFile) : 0));
+			if (!wal.isEmpty() && restored != null) {
+				SnapshotFile.materialize(restored, g);
+				restored = null;
+			}
+			wal.replay((type, from, to, weight, mode) -> replay(g, airports, type, from, to, weight, mode));
+		}
+		if (loadFile != null) {
+			if (restored != null) {
+				SnapshotFile.materialize(restored, g);
+				restored = null;
+			}
+			new BulkLoader(g, airports).load(loadFile);
+		}
+		// Published versions of g; routing only ever reads a pinned version
+		GraphVersions<String> versions = new GraphVersions<String>(g);
+		// Routing engine over a version of g, which stays pinned until a newer
+		// version replaces the engine
+		RoutingEngine<String> search = null;
+		GraphVersions.Version<String> searchVersion = null;
+		// Recent routes, valid until a change to g could affect them
+		RouteCache<String> cache = new RouteCache<String>(g, cacheSize);
+		// Snapshot being written in the background from a rotated log
+		Future<Void> compaction = null;
+		if (loadFile != null && wal != null)
+			// loaded connections are not logged, fold them into the snapshot
+			compaction = compact(versions, wal, snapshotFile);
+		// Origins whose shortest path trees are kept current as g changes,
+		// created by the first ! YYZ
+		DynamicShortestPaths<String> tracked = null;
+		// Full shortest path trees of the most queried origins
+		ShortestPathTreeCache<String> trees = new ShortestPathTreeCache<String>(treeMegabytes * 1024L * 1024L, 2);
+		if (warmLog != null) {
+			// count the origin of every ? YYZ LAX in the log
+			BufferedReader log = new BufferedReader(new FileReader(warmLog));
+			String line;
+			while ((line = log.readLine()) != null) {
+				String[] query = line.split(" ");
+				if (query.length == 3 && query[0].equals("?"))
+					trees.record(query[1], 1);
+			}
+			log.close();
+			// with a graph already loaded or restored, build the trees of the
+			// hottest origins now rather than on their first queries
+			if (restored != null)
+				trees.warm(restored);
+			else if (g.numVertices() > 0) {
+				versions.publish();
+				GraphVersions.Version<String> version = versions.pin();
+				try {
+					trees.warm(version.getGraph());
+				} finally {
+					version.release();
+				}
+			}
+		}
 		
 		BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
 		String in = "";
@@ -23,6 +144,23 @@ public class Main {
 		while ( (in = br.readLine()) != null && !(in.trim().equalsIgnoreCase("QUIT")) ) {
 
 			String[] arr = in.split(" ");
+			// ? YYZ LAX plane,train is routed like ? YYZ LAX over the listed modes
+			long modes = ModeDictionary.ALL;
+			if (arr.length == 4 && arr[0].equals("?") && !arr[3].startsWith("@")) {
+				try {
+					modes = ModeDictionary.mask(arr[3]);
+				} catch (IllegalArgumentException e) {
+					System.out.println("Unknown mode of transportation");
+					continue;
+				}
+				arr = Arrays.copyOf(arr, 3);
+			}
+			if (restored != null && !(arr.length == 3 && arr[0].equals("?")) && !arr[0].equals("?k")
+					&& !arr[0].equals("?p") && !(arr.length == 4 && arr[0].equals("?"))) {
+				// this command needs the graph itself, build it from the snapshot
+				SnapshotFile.materialize(restored, g);
+				restored = null;
+			}
 			
 			Vertex<String> origin;
 			Vertex<String> destination;
@@ -40,111 +178,555 @@ public class Main {
 			case 2:
 				// ? YYZ list all connections
 				// - YYZ delete airport vertex
+				// ?? pairs.txt route a batch of queries
+				// ! YYZ keep the routes from airport current
 				if (arr[0].equals("?")) {
 					// Vertex doesn't exist
-					if (airports.get(arr[1]) == null)
+					if (airports.findVertex(arr[1]) == null)
 						System.out.println("Airport doesn't exist");
 					else {
-						origin = airports.get(arr[1]);
+						origin = airports.findVertex(arr[1]);
 						for (Edge<Integer> e : g.outgoingEdges(origin))
 							System.out.println(g.pathBetweenVertex(e));
 					}
 				} else if (arr[0].equals("-")) {
 					// try to remove vertex from map and from graph
-					if (airports.get(arr[1]) != null)
-						g.removeVertex(airports.remove(arr[1]));
-					else
+					if (airports.findVertex(arr[1]) != null) {
+						g.removeVertex(airports.findVertex(arr[1]));
+						if (wal != null)
+							wal.append(MutationLog.REMOVE_VERTEX, arr[1], null, 0, null);
+					} else
 						System.out.println("Airport doesn't exist");
+				} else if (arr[0].equals("!")) {
+					if (airports.findVertex(arr[1]) == null)
+						System.out.println("Airport doesn't exist");
+					else {
+						if (tracked == null)
+							tracked = new DynamicShortestPaths<String>(g);
+						tracked.track(airports.findVertex(arr[1]));
+					}
+				} else if (arr[0].equals("??")) {
+					// ?? pairs.txt quickest route of every "YYZ LAX" line, routed in parallel
+					List<String[]> pairs = new ArrayList<String[]>();
+					try {
+						BufferedReader file = new BufferedReader(new FileReader(arr[1]));
+						String line;
+						while ((line = file.readLine()) != null) {
+							if (!line.trim().isEmpty())
+								pairs.add(line.trim().split(" "));
+						}
+						file.close();
+					} catch (IOException e) {
+						System.out.println("File can't be read");
+						break;
+					}
+
+					// pin one version of the graph for the whole batch
+					versions.publish();
+					GraphVersions.Version<String> version = versions.pin();
+					try {
+						CompactGraph<String> snapshot = version.getGraph();
+						int[] sources = new int[pairs.size()];
+						int[] targets = new int[pairs.size()];
+						int valid = 0;
+						for (String[] pair : pairs) {
+							if (pair.length == 2 && snapshot.find(pair[0]) != -1 && snapshot.find(pair[1]) != -1) {
+								sources[valid] = snapshot.find(pair[0]);
+								targets[valid] = snapshot.find(pair[1]);
+								valid++;
+							}
+						}
+						Route<String>[] routes = new BatchRouter<String>(snapshot, ForkJoinPool.commonPool())
+								.route(Arrays.copyOf(sources, valid), Arrays.copyOf(targets, valid));
+
+						// print in input order, in the same format as ? YYZ LAX
+						valid = 0;
+						for (String[] pair : pairs) {
+							if (pair.length != 2 || snapshot.find(pair[0]) == -1 || snapshot.find(pair[1]) == -1) {
+								System.out.println("Airport doesn't exist");
+								continue;
+							}
+							printRoute(routes[valid++]);
+						}
+					} finally {
+						version.release();
+					}
 				} else
-					System.out.println("Commands with 2 arguments must start with '-/?'");
+					System.out.println("Commands with 2 arguments must start with '-/?/??/!'");
 				break;
 			case 3:
-				// ? YYZ LAX quickest route
-				if (arr[0].equals("?") && airports.get(arr[1]) != null && airports.get(arr[2]) != null) {
-					int total;
-					int counter = 0;
-					origin = airports.get(arr[1]);
-					destination = airports.get(arr[2]);
-					
-					Map<Vertex<String>, Integer> shortestValue = shortestPath(g, origin);
-					Map<Vertex<String>, Edge<Integer>> shortest = spTree(g, origin, shortestValue);
-					
-					// Total Distance (if total = Integer.MAX_VALUE then graph unconnected
-					total = shortestValue.get(destination);
-					System.out.println(total);
-
-					Stack<String> a = new Stack<String>();
-					
-					// Goes through shortest path
-					while (counter < total) {
-						edge = shortest.get(destination);
-						if (edge == null) {
+				// ? YYZ LAX quickest route (or ? YYZ LAX plane,train, see above)
+				// ? YYZ * travel time to every airport reachable from YYZ
+				// ?p YYZ LAX fastest route for every number of connections
+				if (arr[0].equals("?p")) {
+					// the restored snapshot if there is one, else a pinned version
+					GraphVersions.Version<String> version = null;
+					CompactGraph<String> snapshot = restored;
+					if (snapshot == null) {
+						versions.publish();
+						version = versions.pin();
+						snapshot = version.getGraph();
+					}
+					try {
+						if (snapshot.find(arr[1]) == -1 || snapshot.find(arr[2]) == -1)
+							System.out.println("Airport doesn't exist");
+						else {
+							List<Route<String>> routes = new ParetoSearch<String>(snapshot)
+									.routes(snapshot.find(arr[1]), snapshot.find(arr[2]));
+							if (routes.isEmpty())
+								printRoute(null);
+							for (Route<String> route : routes)
+								printRoute(route);
+						}
+					} finally {
+						if (version != null)
+							version.release();
+					}
+				} else if (arr[0].equals("?") && arr[2].equals("*")) {
+					// the restored snapshot if there is one, else a pinned version
+					GraphVersions.Version<String> version = null;
+					CompactGraph<String> snapshot = restored;
+					if (snapshot == null) {
+						versions.publish();
+						version = versions.pin();
+						snapshot = version.getGraph();
+					}
+					try {
+						if (snapshot.find(arr[1]) == -1)
+							System.out.println("Airport doesn't exist");
+						else
+							printDistances(snapshot, snapshot.find(arr[1]), modes);
+					} finally {
+						if (version != null)
+							version.release();
+					}
+				} else if (restored != null && arr[0].equals("?") && restored.find(arr[1]) != -1
+						&& restored.find(arr[2]) != -1) {
+					// answered straight from the restored snapshot
+					if (search == null)
+						search = newEngine(engineName, restored, null, landmarkCount);
+					int src = restored.find(arr[1]);
+					int dest = restored.find(arr[2]);
+					ShortestPathTreeCache.Tree<String> tree = null;
+					if (modes == ModeDictionary.ALL) {
+						// trees and cached routes hold unfiltered routes only
+						trees.record(arr[1], 1);
+						tree = trees.tree(restored, src);
+					}
+					printRoute(tree != null ? tree.route(dest) : search.route(src, dest, modes));
+				} else if (restored == null && arr[0].equals("?") && airports.findVertex(arr[1]) != null
+						&& airports.findVertex(arr[2]) != null) {
+					origin = airports.findVertex(arr[1]);
+					destination = airports.findVertex(arr[2]);
+					if (tracked != null && modes == ModeDictionary.ALL && tracked.isTracked(origin)) {
+						// kept current by every change, nothing to search
+						List<Edge<Integer>> edges = tracked.route(origin, destination);
+						System.out.println(tracked.distance(origin, destination));
+						if (edges == null)
 							System.out.println("Graph is unconnected");
+						else
+							for (Edge<Integer> e : edges)
+								System.out.println(g.pathBetweenVertex(e));
+						break;
+					}
+					if (modes == ModeDictionary.ALL)
+						trees.record(arr[1], 1);
+					RouteCache.CachedRoute route = (modes == ModeDictionary.ALL ? cache.get(origin, destination) : null);
+					if (route == null) {
+						GraphVersions.Version<String> latest = versions.publish();
+						if (search == null || searchVersion != latest) {
+							GraphVersions.Version<String> version = versions.pin();
+							search = newEngine(engineName, version.getGraph(), search, landmarkCount);
+							if (searchVersion != null)
+								searchVersion.release();
+							searchVersion = version;
+						}
+						CompactGraph<String> snapshot = search.getGraph();
+						int src = snapshot.indexOf(origin);
+						int dest = snapshot.indexOf(destination);
+						// hot origins are answered from their shortest path tree
+						ShortestPathTreeCache.Tree<String> tree = (modes == ModeDictionary.ALL ? trees.tree(snapshot, src)
+								: null);
+						Route<String> found = (tree != null ? tree.route(dest) : search.route(src, dest, modes));
+						if (modes != ModeDictionary.ALL) {
+							printRoute(found);
 							break;
 						}
-						counter += edge.getElement();
-						a.add(g.pathBetweenVertex(edge));
-						destination = g.opposite(destination, edge);
+						route = cache.put(origin, destination, found);
 					}
 
-					while (!a.isEmpty())
-						System.out.println(a.pop());
+					// Total Distance (if total = Integer.MAX_VALUE then graph unconnected
+					System.out.println(route.getTotal());
+					if (route.getTotal() == Integer.MAX_VALUE)
+						System.out.println("Graph is unconnected");
+					for (Edge<Integer> e : route.getEdges())
+						System.out.println(g.pathBetweenVertex(e));
 
 				} else
 					System.out.println("Commands with 3 arguments must start with '?' and airports must already exist");
 				break;
+			case 4:
+				// ?k YYZ LAX 5 the 5 quickest routes that visit no airport twice
+				// ? YYZ LAX @0930 earliest arrival leaving at 9:30, using the timetable
+				if (arr[0].equals("?") && arr[3].startsWith("@")) {
+					int departure;
+					try {
+						departure = Timetable.parseTime(arr[3].substring(1));
+					} catch (IllegalArgumentException e) {
+						System.out.println("Departure time must be in the format @HHMM");
+						break;
+					}
+					// the restored snapshot if there is one, else a pinned version
+					GraphVersions.Version<String> version = null;
+					CompactGraph<String> snapshot = restored;
+					if (snapshot == null) {
+						versions.publish();
+						version = versions.pin();
+						snapshot = version.getGraph();
+					}
+					try {
+						ConnectionScan<String> scan = new ConnectionScan<String>(snapshot, timetable);
+						if (scan.find(arr[1]) == -1 || scan.find(arr[2]) == -1)
+							System.out.println("Airport doesn't exist");
+						else
+							printJourney(scan.route(scan.find(arr[1]), scan.find(arr[2]), departure));
+					} finally {
+						if (version != null)
+							version.release();
+					}
+				} else if (arr[0].equals("?k") && isNumber(arr[3]) && arr[3].length() <= 9
+						&& Integer.parseInt(arr[3]) > 0) {
+					// nine digits or fewer always fit in an int
+					// the restored snapshot if there is one, else a pinned version
+					GraphVersions.Version<String> version = null;
+					CompactGraph<String> snapshot = restored;
+					if (snapshot == null) {
+						versions.publish();
+						version = versions.pin();
+						snapshot = version.getGraph();
+					}
+					try {
+						if (snapshot.find(arr[1]) == -1 || snapshot.find(arr[2]) == -1)
+							System.out.println("Airport doesn't exist");
+						else {
+							List<Route<String>> routes = new KShortestPaths<String>(snapshot)
+									.routes(snapshot.find(arr[1]), snapshot.find(arr[2]), Integer.parseInt(arr[3]));
+							if (routes.isEmpty())
+								printRoute(null);
+							for (Route<String> route : routes)
+								printRoute(route);
+						}
+					} finally {
+						if (version != null)
+							version.release();
+					}
+				} else
+					System.out.println(
+							"Commands with 4 arguments must be ?k YYZ LAX 5, ? YYZ LAX plane,train or ? YYZ LAX @0930");
+				break;
 			case 5:
 				// +/- YYZ JFK 120 plane (add/remove edge)
-				if (arr[0].equals("+") && arr[3].matches("[0-9]+")) {
-					// First vertex already exist in graph, but second doesn't
-					if (airports.containsKey(arr[1]) && !airports.containsKey(arr[2])) {
-						origin = airports.get(arr[1]);
-						destination = g.insertVertex(arr[2]);
-						// Second vertex already exist in graph, but first doesn't
-					} else if (!airports.containsKey(arr[1]) && airports.containsKey(arr[2])) {
-						origin = g.insertVertex(arr[1]);
-						destination = airports.get(arr[2]);
-						// Both vertex do not exist in graph
-					} else if (!airports.containsKey(arr[1]) && !airports.containsKey(arr[2])) {
-						origin = g.insertVertex(arr[1]);
-						destination = g.insertVertex(arr[2]);
-						// Both vertex already exist in graph
-					} else {
-						origin = airports.get(arr[1]);
-						destination = airports.get(arr[2]);
-					}
-					airports.put(arr[1], origin);
-					airports.put(arr[2], destination);
-					edge = g.insertEdge(origin, destination, Integer.parseInt(arr[3]), arr[4]);
-				} else if (arr[0].equals("-") && arr[3].matches("[0-9]+")) {
+				// nine digits or fewer always fit in an int
+				boolean weighted = isNumber(arr[3]) && arr[3].length() <= 9;
+				if (arr[0].equals("+") && weighted) {
+					int weight = Integer.parseInt(arr[3]);
+					try {
+						addConnection(g, airports, arr[1], arr[2], weight, arr[4]);
+					} catch (IllegalArgumentException e) {
+						System.out.println("Too many modes of transportation");
+						break;
+					}
+					if (wal != null)
+						wal.append(MutationLog.ADD_EDGE, arr[1], arr[2], weight, arr[4]);
+				} else if (arr[0].equals("-") && weighted) {
 					// Does not contain one or more key
-					if (!airports.containsKey(arr[1]) || !airports.containsKey(arr[2]))
+					if (airports.findVertex(arr[1]) == null || airports.findVertex(arr[2]) == null)
 						System.out.println("One or more airport(s) does not exist");
 					else {
-						origin = airports.get(arr[1]);
-						destination = airports.get(arr[2]);
+						origin = airports.findVertex(arr[1]);
+						destination = airports.findVertex(arr[2]);
 						edge = g.getEdge(origin, destination);
 
-						String vehicle = g.pathBetweenVertex(origin, destination).split(" ")[3];
-
 						// check if edge is valid
-						if (g.areAdjacent(origin, destination) && edge.getElement() == Integer.parseInt(arr[3])
-								&& vehicle.equals(arr[4]))
+						if (edge != null && edge.getElement() == Integer.parseInt(arr[3])
+								&& ModeDictionary.find(arr[4]) == g.getModeId(edge)) {
 							g.removeEdge(edge);
-						else
+							if (wal != null)
+								wal.append(MutationLog.REMOVE_EDGE, arr[1], arr[2], edge.getElement(), arr[4]);
+						} else
 							System.out.println("Edge is invalid (i.e. doesn't exist, wrong distance, or wrong vehicle");
 					}
 				} else 
 					System.out.println("Commands with 5 arguments must start with '+/-' and 4th argument must be an integer");
 				break;
+			case 6:
+				// + YYZ JFK 120 plane 0930 (add a scheduled connection)
+				// nine digits or fewer always fit in an int
+				if (arr[0].equals("+") && isNumber(arr[3]) && arr[3].length() <= 9) {
+					int departure;
+					try {
+						departure = Timetable.parseTime(arr[5]);
+					} catch (IllegalArgumentException e) {
+						System.out.println("Departure time must be in the format HHMM");
+						break;
+					}
+					int duration = Integer.parseInt(arr[3]);
+					if (duration == 0) {
+						System.out.println("Scheduled connections must take at least 1 minute");
+						break;
+					}
+					try {
+						timetable.add(arr[1], arr[2], departure, duration, arr[4]);
+					} catch (IllegalArgumentException e) {
+						System.out.println("Too many modes of transportation");
+					}
+				} else
+					System.out.println("Commands with 6 arguments must start with '+' and 4th argument must be an integer");
+				break;
 			default:
 				System.out.println("Unknown command");
 				break;
 			}
+
+			// fold a long log into a new snapshot, one compaction at a time
+			if (wal != null && wal.segmentSize() > compactMegabytes * 1024L * 1024L
+					&& (compaction == null || compaction.isDone()))
+				compaction = compact(versions, wal, snapshotFile);
+		}
+
+		if (wal != null) {
+			// every change is in the log; also fold it into the snapshot so
+			// the next start has nothing to replay
+			if (compaction != null)
+				await(compaction);
+			if (restored == null)
+				await(compact(versions, wal, snapshotFile));
+			wal.close();
+		} else if (snapshotFile != null && restored == null) {
+			// save the graph for the next start; a snapshot that was never
+			// materialized is still the file it came from
+			versions.publish();
+			GraphVersions.Version<String> version = versions.pin();
+			try {
+				SnapshotFile.write(version.getGraph(), snapshotFile, 0);
+			} finally {
+				version.release();
+			}
 		}
 		
 	}
 
+	/**
+	 * Adds a connection, inserting either airport if it is new.
+	 * 
+	 * @param g Graph of airports
+	 * @param airports Dictionary of the airports of g
+	 * @param from Name of origin airport
+	 * @param to Name of destination airport
+	 * @param weight Duration of the connection
+	 * @param mode Mode of transportation
+	 * @return Edge of the connection
+	 * @throws IllegalArgumentException if mode is new and the mode dictionary
+	 *         is full
+	 */
+	private static Edge<Integer> addConnection(AdjacencyListGraph<String, Integer> g,
+			AirportDictionary airports, String from, String to, int weight, String mode)
+			throws IllegalArgumentException {
+		// fail on a full mode dictionary before either airport is inserted
+		ModeDictionary.intern(mode);
+		Vertex<String> origin = airports.findVertex(from);
+		if (origin == null)
+			origin = g.insertVertex(from);
+		Vertex<String> destination = airports.findVertex(to);
+		if (destination == null)
+			destination = g.insertVertex(to);
+		return g.insertEdge(origin, destination, weight, mode);
+	}
+
+	/**
+	 * Applies a change read back from the write-ahead log.
+	 * 
+	 * @param g Graph of airports
+	 * @param airports Dictionary of the airports of g
+	 * @param type Type of change, as in {@link MutationLog}
+	 * @param from Origin airport, or the airport removed
+	 * @param to Destination airport
+	 * @param weight Duration of the connection
+	 * @param mode Mode of transportation
+	 */
+	private static void replay(AdjacencyListGraph<String, Integer> g, AirportDictionary airports, byte type,
+			String from, String to, int weight, String mode) {
+		if (type == MutationLog.ADD_EDGE)
+			addConnection(g, airports, from, to, weight, mode);
+		else if (type == MutationLog.REMOVE_EDGE) {
+			if (airports.findVertex(from) != null && airports.findVertex(to) != null) {
+				Edge<Integer> edge = g.getEdge(airports.findVertex(from), airports.findVertex(to));
+				if (edge != null)
+					g.removeEdge(edge);
+			}
+		} else if (type == MutationLog.REMOVE_VERTEX && airports.findVertex(from) != null)
+			g.removeVertex(airports.findVertex(from));
+	}
+
+	/**
+	 * Starts folding the log into a new snapshot. The current version of the
+	 * graph is pinned and the log rotated at the same point, so the snapshot
+	 * holds exactly the changes of the segments it replaces; those are
+	 * deleted once the snapshot is written.
+	 * 
+	 * @param versions Versions of the graph
+	 * @param wal Write-ahead log of the graph
+	 * @param snapshotFile Path of the snapshot
+	 * @return Compaction running in the background
+	 * @throws IOException if the log can't be rotated
+	 */
+	private static Future<Void> compact(GraphVersions<String> versions, MutationLog wal, String snapshotFile)
+			throws IOException {
+		versions.publish();
+		GraphVersions.Version<String> version = versions.pin();
+		long segment;
+		try {
+			segment = wal.rotate();
+		} catch (IOException e) {
+			version.release();
+			throw e;
+		}
+		FutureTask<Void> task = new FutureTask<Void>(() -> {
+			try {
+				SnapshotFile.write(version.getGraph(), snapshotFile, segment);
+				wal.deleteBefore(segment);
+			} finally {
+				version.release();
+			}
+			return null;
+		});
+		Thread thread = new Thread(task, "compaction");
+		thread.setDaemon(true);
+		thread.start();
+		return task;
+	}
+
+	/**
+	 * Waits for a compaction to finish.
+	 * 
+	 * @param compaction Compaction to be waited for
+	 * @throws IOException if the compaction failed
+	 */
+	private static void await(Future<Void> compaction) throws IOException {
+		try {
+			compaction.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compacting", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Compaction failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Prints a route of a snapshot in the format of ? YYZ LAX: the total
+	 * duration, then every connection.
+	 * 
+	 * @param route Route to be printed, or null if there is none
+	 */
+	private static void printRoute(Route<String> route) {
+		if (route == null) {
+			System.out.println(Integer.MAX_VALUE);
+			System.out.println("Graph is unconnected");
+		} else {
+			System.out.println(route.getTotal());
+			for (int i = 0; i < route.size(); i++)
+				System.out.println(route.describe(i));
+		}
+	}
+
+	/**
+	 * Prints a journey in the format of ? YYZ LAX: the total time from the
+	 * departure time, waits included, then every connection. Scheduled
+	 * connections end with their departure time.
+	 * 
+	 * @param journey Journey to be printed, or null if there is none
+	 */
+	private static void printJourney(Journey<String> journey) {
+		if (journey == null) {
+			System.out.println(Integer.MAX_VALUE);
+			System.out.println("Graph is unconnected");
+		} else {
+			System.out.println(journey.getTotal());
+			for (int i = 0; i < journey.size(); i++)
+				System.out.println(journey.describe(i));
+		}
+	}
+
+	/**
+	 * Prints the travel time from src to every airport it can reach, one
+	 * "LAX 120" line each in order of travel time. Lines are written while
+	 * the search runs, as each airport is settled, through a buffer instead
+	 * of one println per line.
+	 * 
+	 * @param g Snapshot of the graph
+	 * @param src Dense id of starting airport
+	 * @param modes Mask of allowed modes
+	 * @throws IOException if the output can't be written
+	 */
+	private static void printDistances(CompactGraph<String> g, int src, long modes) throws IOException {
+		BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+		DijkstraSearch<String> search = new DijkstraSearch<String>(g);
+		search.start(src, modes);
+		for (int v = search.next(); v != -1; v = search.next()) {
+			if (v == src)
+				continue;
+			out.write(String.valueOf(g.element(v)));
+			out.write(' ');
+			out.write(Integer.toString(search.distance(v)));
+			out.newLine();
+		}
+		// System.out itself stays open for the next command
+		out.flush();
+	}
+
+	/**
+	 * Returns true if s is a non-empty string of decimal digits.
+	 * 
+	 * @param s String to be checked
+	 * @return true if s only has digits
+	 */
+	private static boolean isNumber(String s) {
+		if (s.isEmpty())
+			return false;
+		for (int i = 0; i < s.length(); i++)
+			if (s.charAt(i) < '0' || s.charAt(i) > '9')
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns a new routing engine over a snapshot. Preprocessing done by the
+	 * engine it replaces is reused where possible.
+	 * 
+	 * @param <V> Generic type of Vertex
+	 * @param name Name of the engine (dijkstra, bidirectional, alt or ch)
+	 * @param g Snapshot to be routed on
+	 * @param previous Engine over an older snapshot of the same graph, or null
+	 * @param landmarks Number of landmarks for the alt engine
+	 * @return Routing engine
+	 * @throws IllegalArgumentException if name is not a known engine
+	 */
+	public static <V> RoutingEngine<V> newEngine(String name, CompactGraph<V> g, RoutingEngine<V> previous,
+			int landmarks) throws IllegalArgumentException {
+		if (name.equals("dijkstra"))
+			return new DijkstraSearch<V>(g);
+		else if (name.equals("bidirectional"))
+			return new BidirectionalDijkstra<V>(g);
+		else if (name.equals("alt")) {
+			if (previous instanceof AltSearch)
+				return new AltSearch<V>(((AltSearch<V>) previous).getLandmarks().refresh(g));
+			return new AltSearch<V>(new LandmarkIndex<V>(g, landmarks));
+		} else if (name.equals("ch"))
+			return new ContractionHierarchy<V>(g);
+		throw new IllegalArgumentException("Unknown engine " + name);
+	}
+
 	// G has no negative edges
 	/**
 	 * Returns a map with keys of vertices and values of the distance from
@@ -156,47 +738,53 @@ public class Main {
 	 * @return Map of vertex and Integer
 	 */
 	public static <V> Map<Vertex<V>, Integer> shortestPath(Graph<V, Integer> g, Vertex<V> src) {
-		// Distance for shortest path
-		Map<Vertex<V>, Integer> d = new HashMap<Vertex<V>, Integer>();
-		Map<Vertex<V>, Integer> cloud = new HashMap<Vertex<V>, Integer>();
-		
-		PriorityQueue<Vertex<V>> pq = new PriorityQueue<Vertex<V>>(new Comparator<Vertex<V>>() {
-			@Override
-			public int compare(Vertex<V> v1, Vertex<V> v2) {
-				int edgeValue1 = d.get(v1);
-				int edgeValue2 = d.get(v2);
-				return edgeValue1 - edgeValue2;
-			}
-		});
-
-		// INIT-SINGLE-SOURCE
+		// Number the vertices so distances can live in an int array. Building
+		// a snapshot would copy every edge just to search once; callers that
+		// hold one should use shortestPath(IntWeightedGraph, int) instead
+		Map<Vertex<V>, Integer> ids = new HashMap<Vertex<V>, Integer>();
+		@SuppressWarnings("unchecked")
+		Vertex<V>[] vertices = (Vertex<V>[]) new Vertex[g.numVertices()];
 		for (Vertex<V> v : g.vertices()) {
-			if (v == src)
-				d.put(v, 0);
-			else
-				d.put(v, Integer.MAX_VALUE);
-			pq.add(v);
+			vertices[ids.size()] = v;
+			ids.put(v, ids.size());
 		}
+
+		// Distance for shortest path
+		int[] d = new int[vertices.length];
+		boolean[] cloud = new boolean[vertices.length];
+		IndexedMinHeap pq = new IndexedMinHeap(vertices.length);
+
+		// INIT-SINGLE-SOURCE, only src is queued; other vertices are added
+		// when first reached
+		for (int i = 0; i < d.length; i++)
+			d[i] = Integer.MAX_VALUE;
+		int s = ids.get(src);
+		d[s] = 0;
+		pq.push(s, 0);
+
 		// priority queue not empty, extact-min
 		while (!pq.isEmpty()) {
-			Vertex<V> u = pq.poll();
-			cloud.put(u, d.get(u));
+			int u = pq.poll();
+			cloud[u] = true;
 
 			// for each outgoing edge perform relaxation
-			for (Edge<Integer> e : g.outgoingEdges(u)) {
-				Vertex<V> v = g.opposite(u, e);
+			for (Edge<Integer> e : g.outgoingEdges(vertices[u])) {
+				int v = ids.get(g.opposite(vertices[u], e));
 				// perform relaxation if vertex v isn't already in cloud
-				if (cloud.get(v) == null) {
+				if (!cloud[v]) {
 					int weight = e.getElement(); // assume weight is element of edge
-					if (d.get(v) > d.get(u) + weight) {
-						d.put(v, d.get(u) + weight);
-						pq.remove(v);
-						pq.add(v);
+					if (d[v] > d[u] + weight) {
+						d[v] = d[u] + weight;
+						pq.push(v, d[v]);
 					}
 				}
 			}
 		}
-		return cloud;
+
+		Map<Vertex<V>, Integer> result = new HashMap<Vertex<V>, Integer>();
+		for (int i = 0; i < d.length; i++)
+			result.put(vertices[i], d[i]);
+		return result;
 	}
 
 	/**
@@ -225,4 +813,43 @@ public class Main {
 		return tree;
 	}
 	
+
+	/**
+	 * Returns the distance from src to every vertex of a graph, indexed by
+	 * dense vertex id. Unreachable vertices have distance Integer.MAX_VALUE.
+	 * Nothing is boxed; the only objects allocated are the arrays.
+	 * 
+	 * @param g Graph with int weights, e.g. a snapshot
+	 * @param src Dense id of starting vertex
+	 * @return Array of distances
+	 */
+	public static int[] shortestPath(IntWeightedGraph g, int src) {
+		int n = g.numVertices();
+		int[] d = new int[n];
+		boolean[] cloud = new boolean[n];
+		IndexedMinHeap pq = new IndexedMinHeap(n);
+
+		// INIT-SINGLE-SOURCE, only src is queued
+		for (int v = 0; v < n; v++)
+			d[v] = Integer.MAX_VALUE;
+		d[src] = 0;
+		pq.push(src, 0);
+
+		// priority queue not empty, extact-min
+		while (!pq.isEmpty()) {
+			int u = pq.poll();
+			cloud[u] = true;
+
+			// for each outgoing slot perform relaxation
+			for (int slot = g.outStart(u), end = g.outEnd(u); slot < end; slot++) {
+				int v = g.target(slot);
+				if (!cloud[v] && d[v] > d[u] + g.weight(slot)) {
+					d[v] = d[u] + g.weight(slot);
+					pq.push(v, d[v]);
+				}
+			}
+		}
+		return d;
+	}
+	
 }
@@ -0,0 +1,114 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned dictionary of the modes of transportation used by connections.
+ * Each distinct mode gets a small id, so an edge stores one byte instead of a
+ * String, and a set of modes is a bit mask ({@code 1L << id}) that routing
+ * tests with a shift and an and inside the relaxation loop.
+ *
+ * Id {@link #NONE} stands for a connection without a mode; at most
+ * {@link #MAX_MODES} - 1 named modes can be interned. The dictionary is
+ * shared by every graph and safe to use from any thread.
+ *
+ * @author Minh Nguyen
+ */
+public class ModeDictionary {
+
+	/** Id of a connection with no mode of transportation. */
+	public static final byte NONE = 0;
+
+	/** Number of ids, so that every mask fits in a long. */
+	public static final int MAX_MODES = 64;
+
+	/** Mask allowing every mode. */
+	public static final long ALL = -1L;
+
+	private static final ConcurrentHashMap<String, Byte> ids = new ConcurrentHashMap<String, Byte>();
+	// name of every id; replaced, never changed, when a mode is added
+	private static volatile String[] names = new String[] { null };
+
+	/**
+	 * Returns the id of a mode, adding it to the dictionary if it is new.
+	 *
+	 * @param mode Mode of transportation, or null for none
+	 * @return id of the mode
+	 * @throws IllegalArgumentException if the dictionary is full
+	 */
+	public static byte intern(String mode) throws IllegalArgumentException {
+		if (mode == null)
+			return NONE;
+		Byte id = ids.get(mode);
+		if (id != null)
+			return id;
+		synchronized (ids) {
+			id = ids.get(mode);
+			if (id == null) {
+				String[] old = names;
+				if (old.length == MAX_MODES)
+					throw new IllegalArgumentException("More than " + (MAX_MODES - 1) + " modes of transportation");
+				String[] next = Arrays.copyOf(old, old.length + 1);
+				next[old.length] = mode;
+				id = (byte) old.length;
+				// publish the name before the id can be found
+				names = next;
+				ids.put(mode, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Returns the id of a mode without adding it.
+	 *
+	 * @param mode Mode of transportation, or null for none
+	 * @return id of the mode, or -1 if it was never interned
+	 */
+	public static int find(String mode) {
+		if (mode == null)
+			return NONE;
+		Byte id = ids.get(mode);
+		return (id == null ? -1 : id);
+	}
+
+	/**
+	 * Returns the mode with id {@code id}.
+	 *
+	 * @param id Id returned by {@link #intern(String)}
+	 * @return Mode of transportation, null for {@link #NONE}
+	 */
+	public static String name(byte id) {
+		return names[id];
+	}
+
+	/**
+	 * Returns the mask allowing a comma separated list of modes, e.g.
+	 * "plane,train".
+	 *
+	 * @param list Comma separated modes of transportation
+	 * @return mask with the bit of every listed mode set
+	 * @throws IllegalArgumentException if a mode was never used
+	 */
+	public static long mask(String list) throws IllegalArgumentException {
+		long mask = 0;
+		for (String mode : list.split(",")) {
+			int id = find(mode);
+			if (mode.isEmpty() || id < 0)
+				throw new IllegalArgumentException("Unknown mode of transportation " + mode);
+			mask |= 1L << id;
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns true if mask allows the mode with id {@code id}.
+	 *
+	 * @param mask Mask of allowed modes
+	 * @param id   Id of a mode
+	 * @return true if the mode is allowed
+	 */
+	public static boolean allows(long mask, byte id) {
+		return (mask >>> id & 1) != 0;
+	}
+
+}
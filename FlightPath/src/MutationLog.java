@@ -0,0 +1,386 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead log of the changes made to the airport graph, so changes
+ * made since the last {@link SnapshotFile} survive a restart.
+ *
+ * The log is a series of numbered segment files {@code base.0},
+ * {@code base.1}, ... Each record is framed by its length and a CRC32 of its
+ * contents, so a record torn by a crash is detected on replay and cut off.
+ * Records are appended to a buffer and written and synced to disk by a
+ * background thread every {@link #SYNC_MILLIS} milliseconds (group commit):
+ * one sync covers every change made in that window, and appending never
+ * waits for the disk. {@link #sync()} makes everything appended so far
+ * durable immediately.
+ *
+ * To compact, the log is {@link #rotate() rotated} to a new segment while
+ * the graph is snapshotted; once the snapshot is safely written, the
+ * segments before the new one are deleted.
+ *
+ * @author Minh Nguyen
+ */
+public class MutationLog {
+
+	/** A connection was added or replaced: + YYZ JFK 120 plane. */
+	public static final byte ADD_EDGE = 1;
+	/** A connection was removed: - YYZ JFK 120 plane. */
+	public static final byte REMOVE_EDGE = 2;
+	/** An airport was removed: - YYZ. */
+	public static final byte REMOVE_VERTEX = 3;
+
+	/** Longest time a change waits in memory before it is synced. */
+	public static final int SYNC_MILLIS = 10;
+
+	/**
+	 * Applies the records of a log during replay.
+	 */
+	public interface Replayer {
+		/**
+		 * Applies one record.
+		 *
+		 * @param type        ADD_EDGE, REMOVE_EDGE or REMOVE_VERTEX
+		 * @param origin      Origin airport, or the airport removed
+		 * @param destination Destination airport, null for REMOVE_VERTEX
+		 * @param weight      Duration of the connection, 0 if none
+		 * @param mode        Mode of transportation, null if none
+		 */
+		void apply(byte type, String origin, String destination, int weight, String mode);
+	}
+
+	private String base;
+	private long segment;
+	private FileChannel channel;
+	private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+	private IOException failure;
+	// true if records were appended since the last sync
+	private boolean dirty = false;
+	private Thread flusher;
+	private volatile boolean closed = false;
+
+	/**
+	 * Opens the log at {@code base}. Segments numbered below
+	 * {@code firstSegment} are already part of the snapshot and are deleted.
+	 * Nothing can be appended until the log has been {@link #replay(Replayer)
+	 * replayed}.
+	 *
+	 * @param base         Path of the log, without segment number
+	 * @param firstSegment First segment not held by the snapshot
+	 * @throws IOException if the segments can't be listed
+	 */
+	public MutationLog(String base, long firstSegment) throws IOException {
+		this.base = base;
+		segment = firstSegment;
+		deleteBefore(firstSegment);
+	}
+
+	/**
+	 * Returns true if there is no record to replay.
+	 *
+	 * @return true if every segment is empty
+	 */
+	public boolean isEmpty() {
+		for (long number : segments())
+			if (number >= segment && segmentFile(number).length() > 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Applies every record of the log, oldest first, and opens the last
+	 * segment for appending. A torn record at the end of the last segment is
+	 * cut off.
+	 *
+	 * @param replayer Receiver of the records
+	 * @return number of records replayed
+	 * @throws IOException if a segment can't be read, or a segment other
+	 *                     than the last is corrupt
+	 */
+	public synchronized int replay(Replayer replayer) throws IOException {
+		if (channel != null)
+			throw new IllegalStateException("Log was already replayed");
+		List<Long> numbers = segments();
+		int count = 0;
+		for (int i = 0; i < numbers.size(); i++) {
+			long number = numbers.get(i);
+			if (number < segment)
+				continue;
+			segment = number;
+			RandomAccessFile file = new RandomAccessFile(segmentFile(number), "rw");
+			try {
+				byte[] data = new byte[(int) file.length()];
+				file.readFully(data);
+				ByteBuffer in = ByteBuffer.wrap(data);
+				int end = 0;
+				while (readRecord(in, replayer)) {
+					count++;
+					end = in.position();
+				}
+				if (end < data.length) {
+					if (i != numbers.size() - 1)
+						throw new IOException(segmentFile(number) + " is corrupt at byte " + end);
+					// a crash tore the last record, drop it
+					file.setLength(end);
+				}
+			} finally {
+				file.close();
+			}
+		}
+		open(segment);
+		flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!closed) {
+					try {
+						Thread.sleep(SYNC_MILLIS);
+						sync();
+					} catch (InterruptedException e) {
+						return;
+					} catch (IOException e) {
+						// kept and thrown to the next append
+					}
+				}
+			}
+		}, "mutation-log-sync");
+		flusher.setDaemon(true);
+		flusher.start();
+		return count;
+	}
+
+	/**
+	 * Appends a record. It is durable once the next group commit has run.
+	 *
+	 * @param type        ADD_EDGE, REMOVE_EDGE or REMOVE_VERTEX
+	 * @param origin      Origin airport, or the airport removed
+	 * @param destination Destination airport, null for REMOVE_VERTEX
+	 * @param weight      Duration of the connection, 0 if none
+	 * @param mode        Mode of transportation, null if none
+	 * @throws IOException              if an earlier write failed
+	 * @throws IllegalArgumentException if a name is longer than 65535 bytes
+	 */
+	public synchronized void append(byte type, String origin, String destination, int weight, String mode)
+			throws IOException, IllegalArgumentException {
+		if (failure != null)
+			throw failure;
+		if (channel == null)
+			throw new IllegalStateException("Log must be replayed before appending");
+		byte[] a = bytes(origin), b = bytes(destination), m = bytes(mode);
+		if (a.length > 0xffff || b.length > 0xffff || m.length > 0xffff)
+			throw new IllegalArgumentException("Name is too long to be logged");
+		int length = 1 + 3 * 2 + a.length + b.length + m.length + 4;
+		if (pending.remaining() < 8 + length) {
+			write();
+			if (pending.capacity() < 8 + length)
+				pending = ByteBuffer.allocate(8 + length);
+		}
+		int start = pending.position();
+		pending.putInt(length);
+		pending.putInt(0);
+		pending.put(type);
+		putBytes(pending, a);
+		putBytes(pending, b);
+		putBytes(pending, m);
+		pending.putInt(weight);
+		CRC32 crc = new CRC32();
+		crc.update(pending.array(), start + 8, length);
+		pending.putInt(start + 4, (int) crc.getValue());
+		dirty = true;
+	}
+
+	/**
+	 * Writes every appended record and syncs the segment to disk.
+	 *
+	 * @throws IOException if the segment can't be written
+	 */
+	public void sync() throws IOException {
+		FileChannel target;
+		synchronized (this) {
+			if (channel == null || !dirty)
+				return;
+			write();
+			dirty = false;
+			target = channel;
+		}
+		// syncing outside the lock lets appends carry on meanwhile
+		try {
+			target.force(false);
+		} catch (IOException e) {
+			synchronized (this) {
+				// a rotated segment was already synced and closed
+				if (target == channel) {
+					failure = e;
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes everything appended so far durable and starts a new segment.
+	 * Records appended afterwards go to the new segment.
+	 *
+	 * @return number of the new segment
+	 * @throws IOException if the segments can't be written
+	 */
+	public synchronized long rotate() throws IOException {
+		write();
+		dirty = false;
+		channel.force(false);
+		channel.close();
+		open(segment + 1);
+		return segment;
+	}
+
+	/**
+	 * Returns the size of the segment being appended to.
+	 *
+	 * @return size in bytes
+	 * @throws IOException if the size can't be read
+	 */
+	public synchronized long segmentSize() throws IOException {
+		return channel.size() + pending.position();
+	}
+
+	/**
+	 * Deletes every segment numbered below {@code first}, once their records
+	 * are held by a snapshot.
+	 *
+	 * @param first First segment to keep
+	 */
+	public void deleteBefore(long first) {
+		for (long number : segments())
+			if (number < first)
+				segmentFile(number).delete();
+	}
+
+	/**
+	 * Syncs every appended record and stops the background sync.
+	 *
+	 * @throws IOException if the segment can't be written
+	 */
+	public synchronized void close() throws IOException {
+		closed = true;
+		if (flusher != null)
+			flusher.interrupt();
+		if (channel != null) {
+			write();
+			channel.force(false);
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * Opens segment {@code number} for appending.
+	 */
+	private void open(long number) throws IOException {
+		segment = number;
+		@SuppressWarnings("resource")
+		RandomAccessFile file = new RandomAccessFile(segmentFile(number), "rw");
+		channel = file.getChannel();
+		channel.position(channel.size());
+	}
+
+	/**
+	 * Writes the pending records to the segment, without syncing.
+	 */
+	private void write() throws IOException {
+		pending.flip();
+		try {
+			while (pending.hasRemaining())
+				channel.write(pending);
+		} catch (IOException e) {
+			failure = e;
+			throw e;
+		} finally {
+			pending.clear();
+		}
+	}
+
+	/**
+	 * Reads one record and applies it.
+	 *
+	 * @return false if there is no complete, intact record left
+	 */
+	private static boolean readRecord(ByteBuffer in, Replayer replayer) {
+		if (in.remaining() < 8)
+			return false;
+		int length = in.getInt();
+		int checksum = in.getInt();
+		if (length < 0 || in.remaining() < length)
+			return false;
+		CRC32 crc = new CRC32();
+		crc.update(in.array(), in.position(), length);
+		if ((int) crc.getValue() != checksum)
+			return false;
+		byte type = in.get();
+		String origin = getString(in);
+		String destination = getString(in);
+		String mode = getString(in);
+		int weight = in.getInt();
+		replayer.apply(type, origin, destination, weight, mode);
+		return true;
+	}
+
+	/**
+	 * Returns the numbers of every segment on disk, in increasing order.
+	 */
+	private List<Long> segments() {
+		File file = new File(base).getAbsoluteFile();
+		String prefix = file.getName() + ".";
+		List<Long> numbers = new ArrayList<Long>();
+		String[] names = file.getParentFile().list();
+		if (names != null) {
+			for (String name : names) {
+				if (name.startsWith(prefix) && name.substring(prefix.length()).matches("[0-9]+"))
+					numbers.add(Long.parseLong(name.substring(prefix.length())));
+			}
+		}
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	/**
+	 * Returns the file of segment {@code number}.
+	 */
+	private File segmentFile(long number) {
+		return new File(base + "." + number);
+	}
+
+	/**
+	 * Returns the UTF-8 bytes of s; null becomes an empty array.
+	 */
+	private static byte[] bytes(String s) {
+		return (s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Puts a byte array preceded by its length as a short.
+	 */
+	private static void putBytes(ByteBuffer out, byte[] bytes) {
+		out.putShort((short) bytes.length);
+		out.put(bytes);
+	}
+
+	/**
+	 * Gets a string put by {@link #putBytes(ByteBuffer, byte[])}; an empty
+	 * string is read as null.
+	 */
+	private static String getString(ByteBuffer in) {
+		int length = in.getShort() & 0xffff;
+		if (length == 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
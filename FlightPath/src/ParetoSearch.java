@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the Pareto set of routes between two vertices of a
+ * {@link CompactGraph} over two criteria, total weight and number of
+ * connections: for every number of connections, the fastest route is kept
+ * only if it is faster than every route with fewer connections. The first
+ * route of the set has the fewest connections and the last is the fastest.
+ *
+ * The search runs in rounds, RAPTOR style: round k relaxes the connections
+ * out of the vertices reached faster in round k-1, so it finds the fastest
+ * route of k connections to every vertex. A new label (weight, connections)
+ * is only made for a vertex if it is faster than every label the vertex
+ * already has, which have fewer connections, so the labels of a vertex are
+ * its Pareto set, and a label no faster than the best one at the
+ * destination is pruned. Labels are kept in flat int arrays, one entry per
+ * label, rather than as objects.
+ *
+ * An instance is not thread-safe.
+ *
+ * @author Minh Nguyen
+ */
+public class ParetoSearch<V> {
+
+	private CompactGraph<V> g;
+	// fastest weight of every vertex over the rounds so far
+	private int[] best;
+	// last label of every vertex
+	private int[] lastLabel;
+	private int[] stamp;
+	private int generation = 0;
+
+	// label i reaches labelVertex[i] with weight labelWeight[i] after
+	// labelRound[i] connections, the last being slot labelSlot[i] from label
+	// labelParent[i]. The labels of a vertex form its bag, linked from its
+	// last label through labelPrevious
+	private int[] labelVertex = new int[64];
+	private int[] labelWeight = new int[64];
+	private int[] labelRound = new int[64];
+	private int[] labelSlot = new int[64];
+	private int[] labelParent = new int[64];
+	private int[] labelPrevious = new int[64];
+	private int labels = 0;
+
+	// labels made in the last round, and those made in this one
+	private int[] marked;
+	private int[] next;
+
+	/**
+	 * Constructs a Pareto search over {@code g}.
+	 *
+	 * @param g Snapshot to be searched
+	 */
+	public ParetoSearch(CompactGraph<V> g) {
+		this.g = g;
+		int n = g.numVertices();
+		best = new int[n];
+		lastLabel = new int[n];
+		stamp = new int[n];
+		marked = new int[n];
+		next = new int[n];
+	}
+
+	/**
+	 * Returns the snapshot this search runs on.
+	 *
+	 * @return Snapshot of the search
+	 */
+	public CompactGraph<V> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Returns the Pareto set of routes from src to dest, fewest connections
+	 * first. Each route has more connections and a smaller total weight than
+	 * the one before it.
+	 *
+	 * @param src  Dense id of starting vertex
+	 * @param dest Dense id of destination vertex
+	 * @return Routes from src to dest, empty if dest can't be reached
+	 */
+	public List<Route<V>> routes(int src, int dest) {
+		if (++generation == 0) {
+			// stamps wrapped around, forget every old entry
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		labels = 0;
+		int first = label(src, 0, 0, -1, -1);
+		marked[0] = first;
+		int markedCount = 1;
+
+		for (int round = 1; markedCount > 0; round++) {
+			int nextCount = 0;
+			for (int m = 0; m < markedCount; m++) {
+				int from = marked[m];
+				int u = labelVertex[from];
+				int du = labelWeight[from];
+				for (int slot = g.outStart(u), end = g.outEnd(u); slot < end; slot++) {
+					int v = g.target(slot);
+					int dv = du + g.weight(slot);
+					// dominated by a label with no more connections
+					if (stamp[v] == generation && dv >= best[v])
+						continue;
+					if (stamp[dest] == generation && dv >= best[dest])
+						continue;
+					if (stamp[v] == generation && labelRound[lastLabel[v]] == round) {
+						// improve the label made for v earlier in this round
+						int label = lastLabel[v];
+						labelWeight[label] = dv;
+						labelSlot[label] = slot;
+						labelParent[label] = from;
+						best[v] = dv;
+					} else
+						next[nextCount++] = label(v, dv, round, slot, from);
+				}
+			}
+			int[] swap = marked;
+			marked = next;
+			next = swap;
+			markedCount = nextCount;
+		}
+
+		// the labels of dest, last round first
+		List<Route<V>> routes = new ArrayList<Route<V>>();
+		if (stamp[dest] != generation)
+			return routes;
+		for (int label = lastLabel[dest]; label != -1; label = labelPrevious[label])
+			routes.add(unwind(label));
+		Collections.reverse(routes);
+		return routes;
+	}
+
+	/**
+	 * Adds a label and makes it the last label of its vertex.
+	 *
+	 * @return index of the label
+	 */
+	private int label(int v, int weight, int round, int slot, int parent) {
+		if (labels == labelVertex.length) {
+			int capacity = labels * 2;
+			labelVertex = Arrays.copyOf(labelVertex, capacity);
+			labelWeight = Arrays.copyOf(labelWeight, capacity);
+			labelRound = Arrays.copyOf(labelRound, capacity);
+			labelSlot = Arrays.copyOf(labelSlot, capacity);
+			labelParent = Arrays.copyOf(labelParent, capacity);
+			labelPrevious = Arrays.copyOf(labelPrevious, capacity);
+		}
+		labelVertex[labels] = v;
+		labelWeight[labels] = weight;
+		labelRound[labels] = round;
+		labelSlot[labels] = slot;
+		labelParent[labels] = parent;
+		labelPrevious[labels] = (stamp[v] == generation ? lastLabel[v] : -1);
+		stamp[v] = generation;
+		best[v] = weight;
+		lastLabel[v] = labels;
+		return labels++;
+	}
+
+	/**
+	 * Builds the route of a label by walking its parent labels back.
+	 */
+	private Route<V> unwind(int label) {
+		int length = labelRound[label];
+		int[] slots = new int[length];
+		for (int l = label; labelParent[l] != -1; l = labelParent[l])
+			slots[--length] = labelSlot[l];
+		return new Route<V>(g, labelWeight[label], slots);
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+ * A route found on a {@link CompactGraph}: its total weight and the outgoing
+ * slots it uses, in travel order.
+ *
+ * @author Minh Nguyen
+ */
+public class Route<V> {
+
+	private CompactGraph<V> graph;
+	private int total;
+	private int[] slots;
+
+	/**
+	 * Constructs a route over {@code graph}.
+	 *
+	 * @param graph Snapshot the slots belong to
+	 * @param total Total weight of the route
+	 * @param slots Outgoing slots in travel order
+	 */
+	public Route(CompactGraph<V> graph, int total, int[] slots) {
+		this.graph = graph;
+		this.total = total;
+		this.slots = slots;
+	}
+
+	/**
+	 * Returns the snapshot the slots of this route belong to.
+	 *
+	 * @return Snapshot of the route
+	 */
+	public CompactGraph<V> getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the total weight of the route.
+	 *
+	 * @return total weight
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns the number of connections in the route.
+	 *
+	 * @return number of connections
+	 */
+	public int size() {
+		return slots.length;
+	}
+
+	/**
+	 * Returns the slot of the i-th connection of the route.
+	 *
+	 * @param i Index of connection, starting at 0
+	 * @return Outgoing slot
+	 */
+	public int slot(int i) {
+		return slots[i];
+	}
+
+	/**
+	 * Returns the Edge of the source graph used by the i-th connection.
+	 *
+	 * @param i Index of connection, starting at 0
+	 * @return Edge of the source graph
+	 */
+	public Edge<Integer> edge(int i) {
+		return graph.edge(slots[i]);
+	}
+
+	/**
+	 * Represents the i-th connection of the route as it was when the snapshot
+	 * was taken, in the form "[String] [String] [int] [String]".
+	 *
+	 * @param i Index of connection, starting at 0
+	 * @return String representation of the connection
+	 */
+	public String describe(int i) {
+		return graph.describe(slots[i]);
+	}
+
+	/**
+	 * Builds a route by walking parent slots back from {@code dest} to
+	 * {@code src}.
+	 *
+	 * @param <V>    Generic type of Vertex
+	 * @param graph  Snapshot the slots belong to
+	 * @param src    Dense id of starting vertex
+	 * @param dest   Dense id of destination vertex
+	 * @param total  Total weight of the route
+	 * @param parent Slot used to reach each vertex
+	 * @return Route from src to dest
+	 */
+	public static <V> Route<V> unwind(CompactGraph<V> graph, int src, int dest, int total, int[] parent) {
+		int length = 0;
+		for (int v = dest; v != src; v = graph.tail(parent[v]))
+			length++;
+		int[] slots = new int[length];
+		for (int v = dest; v != src; v = graph.tail(parent[v]))
+			slots[--length] = parent[v];
+		return new Route<V>(graph, total, slots);
+	}
+
+}
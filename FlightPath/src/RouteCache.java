@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of fastest routes between pairs of
+ * vertices of an {@link AdjacencyListGraph}.
+ *
+ * Every entry remembers the graph epoch it is valid for and is never served
+ * at any other epoch. As a listener of the graph the cache keeps entries
+ * that a change can't affect valid for the new epoch:
+ * <ul>
+ * <li>removing an edge, or making it slower, only drops the routes using
+ * it; every other route is still the fastest</li>
+ * <li>inserting a vertex changes no route</li>
+ * <li>removing a vertex drops the routes starting or ending at it (its edges
+ * were already handled as removals)</li>
+ * </ul>
+ * Inserting an edge or making one faster may improve any route, so those
+ * changes simply let the epoch move past every entry.
+ *
+ * @author Minh Nguyen
+ */
+public class RouteCache<V> implements GraphListener<V, Integer> {
+
+	/**
+	 * A cached route: its total weight and the edges it uses in travel order.
+	 * An unreachable destination is cached with total Integer.MAX_VALUE.
+	 */
+	public static class CachedRoute {
+		private long epoch;
+		private int total;
+		private List<Edge<Integer>> edges;
+
+		/**
+		 * Constructs a cached route.
+		 *
+		 * @param epoch Graph epoch the route is valid for
+		 * @param total Total weight of the route
+		 * @param edges Edges of the route in travel order
+		 */
+		private CachedRoute(long epoch, int total, List<Edge<Integer>> edges) {
+			this.epoch = epoch;
+			this.total = total;
+			this.edges = edges;
+		}
+
+		/**
+		 * Returns the total weight of the route.
+		 *
+		 * @return total weight, Integer.MAX_VALUE if unreachable
+		 */
+		public int getTotal() {
+			return total;
+		}
+
+		/**
+		 * Returns the edges of the route in travel order.
+		 *
+		 * @return unmodifiable list of edges
+		 */
+		public List<Edge<Integer>> getEdges() {
+			return edges;
+		}
+	}
+
+	/**
+	 * Key of the cache: an ordered pair of vertices.
+	 */
+	private static class Key {
+		private Vertex<?> origin;
+		private Vertex<?> destination;
+
+		private Key(Vertex<?> origin, Vertex<?> destination) {
+			this.origin = origin;
+			this.destination = destination;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return origin == k.origin && destination == k.destination;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(origin) + System.identityHashCode(destination);
+		}
+	}
+
+	private AdjacencyListGraph<V, Integer> g;
+	private Map<Key, CachedRoute> entries;
+	private int hits = 0;
+	private int misses = 0;
+
+	/**
+	 * Constructs a cache of up to {@code capacity} routes over g, and
+	 * registers it as a listener of g.
+	 *
+	 * @param g        Graph the routes are found on
+	 * @param capacity Largest number of routes kept
+	 */
+	public RouteCache(AdjacencyListGraph<V, Integer> g, int capacity) {
+		this.g = g;
+		entries = new LinkedHashMap<Key, CachedRoute>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedRoute> eldest) {
+				return size() > capacity;
+			}
+		};
+		g.addListener(this);
+	}
+
+	/**
+	 * Returns the cached route from origin to destination, or null if there
+	 * is none valid for the current epoch of the graph.
+	 *
+	 * @param origin      Starting vertex
+	 * @param destination Destination vertex
+	 * @return Cached route, or null
+	 */
+	public CachedRoute get(Vertex<V> origin, Vertex<V> destination) {
+		CachedRoute route = entries.get(new Key(origin, destination));
+		if (route == null || route.epoch != g.getEpoch()) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return route;
+	}
+
+	/**
+	 * Caches a route found at the current epoch of the graph.
+	 *
+	 * @param origin      Starting vertex
+	 * @param destination Destination vertex
+	 * @param route       Route found, or null if destination is unreachable
+	 * @return Cached route
+	 */
+	public CachedRoute put(Vertex<V> origin, Vertex<V> destination, Route<V> route) {
+		CachedRoute cached;
+		if (route == null) {
+			cached = new CachedRoute(g.getEpoch(), Integer.MAX_VALUE, Collections.<Edge<Integer>>emptyList());
+		} else {
+			List<Edge<Integer>> edges = new ArrayList<Edge<Integer>>(route.size());
+			for (int i = 0; i < route.size(); i++)
+				edges.add(route.edge(i));
+			cached = new CachedRoute(g.getEpoch(), route.getTotal(), Collections.unmodifiableList(edges));
+		}
+		entries.put(new Key(origin, destination), cached);
+		return cached;
+	}
+
+	/**
+	 * Returns the number of routes currently held.
+	 *
+	 * @return number of routes
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of lookups answered from the cache.
+	 *
+	 * @return number of hits
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that found no valid route.
+	 *
+	 * @return number of misses
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Drops every route.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	@Override
+	public void vertexInserted(Vertex<V> v) {
+		revalidate(null, null);
+	}
+
+	@Override
+	public void vertexRemoved(Vertex<V> v) {
+		revalidate(null, v);
+	}
+
+	@Override
+	public void edgeInserted(Edge<Integer> e) {
+		// may improve any route, let the epoch invalidate everything
+	}
+
+	@Override
+	public void edgeRemoved(Edge<Integer> e) {
+		revalidate(e, null);
+	}
+
+	@Override
+	public void edgeReplaced(Edge<Integer> e, Integer old) {
+		// a slower edge is like a removal, a faster one may improve anything
+		if (e.getElement() >= old)
+			revalidate(e, null);
+	}
+
+	/**
+	 * Drops the routes using edge e or starting or ending at vertex v, and
+	 * moves every other route that was valid just before the change to the
+	 * new epoch.
+	 *
+	 * @param e Edge that was removed or slowed down, or null
+	 * @param v Vertex that was removed, or null
+	 */
+	private void revalidate(Edge<Integer> e, Vertex<V> v) {
+		long epoch = g.getEpoch();
+		Iterator<Map.Entry<Key, CachedRoute>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, CachedRoute> entry = it.next();
+			CachedRoute route = entry.getValue();
+			if (route.epoch != epoch - 1 || (v != null
+					&& (entry.getKey().origin == v || entry.getKey().destination == v))
+					|| (e != null && route.edges.contains(e)))
+				it.remove();
+			else
+				route.epoch = epoch;
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+/**
+ * An engine answering fastest route queries on a {@link CompactGraph}.
+ * 
+ * @author Minh Nguyen
+ */
+public interface RoutingEngine<V> {
+	/**
+	 * Returns the snapshot this engine routes on.
+	 * 
+	 * @return Snapshot of the engine
+	 */
+	public CompactGraph<V> getGraph();
+
+	/**
+	 * Returns the fastest route from src to dest, or null if dest can't be
+	 * reached.
+	 * 
+	 * @param src  Dense id of starting vertex
+	 * @param dest Dense id of destination vertex
+	 * @return Route from src to dest, or null
+	 */
+	public Route<V> route(int src, int dest);
+
+	/**
+	 * Returns the fastest route from src to dest using only connections
+	 * whose mode is allowed by {@code modes}, or null if there is none.
+	 * 
+	 * @param src   Dense id of starting vertex
+	 * @param dest  Dense id of destination vertex
+	 * @param modes Mask of allowed modes, see {@link ModeDictionary}
+	 * @return Route from src to dest, or null
+	 */
+	public Route<V> route(int src, int dest, long modes);
+}
@@ -0,0 +1,203 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps complete shortest path trees (distance and parent slot of every
+ * vertex) for the most frequently queried origins, so any destination from a
+ * hot origin is answered by walking the tree instead of searching.
+ *
+ * The cache counts queries per origin element. An origin gets a tree once it
+ * has been asked for {@code admitAfter} times; when the trees no longer fit
+ * in the memory budget, the least queried origins are evicted first, and an
+ * origin is only admitted if it is queried more often than the one it would
+ * evict. Counts can be seeded from a recorded query log before any query is
+ * made.
+ *
+ * Trees belong to one {@link CompactGraph} snapshot and are dropped when a
+ * newer snapshot is used.
+ *
+ * @author Minh Nguyen
+ */
+public class ShortestPathTreeCache<V> {
+
+	/**
+	 * A complete shortest path tree from one origin of a snapshot.
+	 */
+	public static class Tree<V> {
+		private CompactGraph<V> g;
+		private int src;
+		private int[] dist;
+		private int[] parent;
+
+		/**
+		 * Copies the tree left by a full search from src.
+		 *
+		 * @param search Search that has settled every vertex reachable from src
+		 * @param src    Dense id of the origin
+		 */
+		private Tree(DijkstraSearch<V> search, int src) {
+			g = search.getGraph();
+			this.src = src;
+			int n = g.numVertices();
+			dist = new int[n];
+			parent = new int[n];
+			for (int v = 0; v < n; v++) {
+				dist[v] = search.distance(v);
+				parent[v] = search.parent(v);
+			}
+		}
+
+		/**
+		 * Returns the distance from the origin to v.
+		 *
+		 * @param v Dense id of vertex
+		 * @return distance, Integer.MAX_VALUE if unreachable
+		 */
+		public int distance(int v) {
+			return dist[v];
+		}
+
+		/**
+		 * Returns the fastest route from the origin to dest, or null if dest
+		 * can't be reached.
+		 *
+		 * @param dest Dense id of destination vertex
+		 * @return Route to dest, or null
+		 */
+		public Route<V> route(int dest) {
+			if (dist[dest] == Integer.MAX_VALUE)
+				return null;
+			return Route.unwind(g, src, dest, dist[dest], parent);
+		}
+
+		/**
+		 * Returns the approximate memory used by the tree.
+		 *
+		 * @return size in bytes
+		 */
+		private long bytes() {
+			return 8L * dist.length + 64;
+		}
+	}
+
+	private long budget;
+	private int admitAfter;
+	private long used = 0;
+	private CompactGraph<V> g;
+	private DijkstraSearch<V> search;
+	private Map<V, Integer> counts = new HashMap<V, Integer>();
+	private Map<V, Tree<V>> trees = new HashMap<V, Tree<V>>();
+
+	/**
+	 * Constructs an empty cache.
+	 *
+	 * @param budget     Largest number of bytes the trees may take
+	 * @param admitAfter Queries an origin needs before it gets a tree
+	 */
+	public ShortestPathTreeCache(long budget, int admitAfter) {
+		this.budget = budget;
+		this.admitAfter = admitAfter;
+	}
+
+	/**
+	 * Counts {@code times} queries from origin.
+	 *
+	 * @param origin Element of the origin vertex
+	 * @param times  Number of queries
+	 */
+	public void record(V origin, int times) {
+		Integer count = counts.get(origin);
+		counts.put(origin, (count == null ? 0 : count) + times);
+	}
+
+	/**
+	 * Returns the number of queries counted for origin.
+	 *
+	 * @param origin Element of the origin vertex
+	 * @return number of queries
+	 */
+	public int count(V origin) {
+		Integer count = counts.get(origin);
+		return (count == null ? 0 : count);
+	}
+
+	/**
+	 * Returns the number of trees currently held.
+	 *
+	 * @return number of trees
+	 */
+	public int size() {
+		return trees.size();
+	}
+
+	/**
+	 * Builds the trees of the most queried origins of snapshot g, hottest
+	 * first, until the budget is used up, so that queries counted before g
+	 * existed, e.g. from a recorded log, are answered from a tree at once.
+	 *
+	 * @param g Current snapshot
+	 * @return number of trees held afterwards
+	 */
+	public int warm(CompactGraph<V> g) {
+		List<V> origins = new ArrayList<V>(counts.keySet());
+		Collections.sort(origins, (a, b) -> Integer.compare(count(b), count(a)));
+		for (V origin : origins) {
+			if (count(origin) < admitAfter)
+				break;
+			int src = g.find(origin);
+			// the budget is full, and every colder origin is refused too
+			if (src >= 0 && tree(g, src) == null)
+				break;
+		}
+		return trees.size();
+	}
+
+	/**
+	 * Returns the tree of src in snapshot g, building it if src is hot enough
+	 * to be admitted, or null if src does not get a tree.
+	 *
+	 * @param g   Current snapshot
+	 * @param src Dense id of the origin in g
+	 * @return Tree from src, or null
+	 */
+	public Tree<V> tree(CompactGraph<V> g, int src) {
+		if (this.g != g) {
+			// every tree belongs to an older snapshot
+			this.g = g;
+			search = null;
+			trees.clear();
+			used = 0;
+		}
+		V origin = g.element(src);
+		Tree<V> tree = trees.get(origin);
+		if (tree != null)
+			return tree;
+
+		int count = count(origin);
+		long size = 8L * g.numVertices() + 64;
+		if (count < admitAfter || size > budget)
+			return null;
+		// make room, but only by evicting origins queried less than this one
+		while (used + size > budget) {
+			V coldest = null;
+			for (V cached : trees.keySet())
+				if (coldest == null || count(cached) < count(coldest))
+					coldest = cached;
+			if (count(coldest) >= count)
+				return null;
+			used -= trees.remove(coldest).bytes();
+		}
+
+		if (search == null)
+			search = new DijkstraSearch<V>(g);
+		search.search(src);
+		tree = new Tree<V>(search, src);
+		trees.put(origin, tree);
+		used += tree.bytes();
+		return tree;
+	}
+
+}
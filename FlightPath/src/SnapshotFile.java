@@ -0,0 +1,250 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes {@link CompactGraph} snapshots of an airport graph in a
+ * versioned binary format, so a restart can route immediately instead of
+ * replaying every command.
+ *
+ * The file holds, in order:
+ * <ul>
+ * <li>a header: magic number, format version, the first {@link MutationLog}
+ * segment not held by the snapshot (since version 2), then vertex, slot, edge
+ * and mode counts</li>
+ * <li>the airport dictionary: every airport name by dense id</li>
+ * <li>the mode dictionary: every distinct mode of transportation</li>
+ * <li>the adjacency arrays: slot offsets of every vertex, then the target,
+ * weight, mode id and direction of every slot, then the forward slot of every
+ * edge in insertion order</li>
+ * </ul>
+ * Strings are stored as a length and UTF-8 bytes, numbers as big-endian ints
+ * (the log segment as a long).
+ *
+ * Files are written to a temporary file that is synced and then moved over
+ * the old snapshot, so a crash leaves either the old or the new snapshot.
+ * They are read through {@link FileChannel#map}, copying each array out of
+ * the mapping in bulk; only the names create objects.
+ *
+ * @author Minh Nguyen
+ */
+public class SnapshotFile {
+
+	private static final int MAGIC = 0x46525350; // "FRSP"
+	private static final int VERSION = 2;
+
+	/**
+	 * Writes a snapshot to {@code path}, replacing any file there atomically.
+	 *
+	 * @param g       Snapshot to be written
+	 * @param path    Path of the file
+	 * @param segment First log segment whose changes are not in the snapshot
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(CompactGraph<String> g, String path, long segment) throws IOException {
+		Path target = Paths.get(path).toAbsolutePath();
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+		// number the distinct modes
+		Map<String, Integer> modeIds = new HashMap<String, Integer>();
+		String[] modes = new String[16];
+		int[] slotModes = new int[g.numSlots()];
+		for (int slot = 0; slot < g.numSlots(); slot++) {
+			Integer id = modeIds.get(g.mode(slot));
+			if (id == null) {
+				id = modeIds.size();
+				modeIds.put(g.mode(slot), id);
+				if (id == modes.length)
+					modes = Arrays.copyOf(modes, id * 2);
+				modes[id] = g.mode(slot);
+			}
+			slotModes[slot] = id;
+		}
+
+		FileOutputStream file = new FileOutputStream(temp.toFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(segment);
+			out.writeInt(g.numVertices());
+			out.writeInt(g.numSlots());
+			out.writeInt(g.numEdges());
+			out.writeInt(modeIds.size());
+			for (int v = 0; v < g.numVertices(); v++)
+				writeString(out, g.element(v));
+			for (int i = 0; i < modeIds.size(); i++)
+				writeString(out, modes[i]);
+			for (int v = 0; v < g.numVertices(); v++)
+				out.writeInt(g.outStart(v));
+			out.writeInt(g.numSlots());
+			for (int slot = 0; slot < g.numSlots(); slot++)
+				out.writeInt(g.target(slot));
+			for (int slot = 0; slot < g.numSlots(); slot++)
+				out.writeInt(g.weight(slot));
+			for (int slot = 0; slot < g.numSlots(); slot++)
+				out.writeInt(slotModes[slot]);
+			for (int slot = 0; slot < g.numSlots(); slot++)
+				out.writeByte(g.isReversed(slot) ? 1 : 0);
+			for (int k = 0; k < g.numEdges(); k++)
+				out.writeInt(g.edgeSlot(k));
+			out.flush();
+			// make the data durable before it replaces the old snapshot
+			file.getFD().sync();
+		} finally {
+			file.close();
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #write(CompactGraph, String, long)}.
+	 *
+	 * @param path Path of the file
+	 * @return Snapshot held by the file
+	 * @throws IOException if the file can't be read or is not a snapshot
+	 */
+	public static CompactGraph<String> read(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try {
+				if (in.getInt() != MAGIC)
+					throw new IOException(path + " is not a graph snapshot");
+				int version = in.getInt();
+				if (version < 1 || version > VERSION)
+					throw new IOException(path + " has unsupported snapshot version " + version);
+				if (version >= 2)
+					in.getLong();
+				int n = in.getInt();
+				int slots = in.getInt();
+				int edges = in.getInt();
+				int modeCount = in.getInt();
+
+				String[] elements = new String[n];
+				for (int v = 0; v < n; v++)
+					elements[v] = readString(in);
+				String[] modeNames = new String[modeCount];
+				for (int i = 0; i < modeCount; i++)
+					modeNames[i] = readString(in);
+
+				int[] outOffsets = readInts(in, n + 1);
+				int[] targets = readInts(in, slots);
+				int[] weights = readInts(in, slots);
+				int[] slotModes = readInts(in, slots);
+				byte[] directions = new byte[slots];
+				in.get(directions);
+				int[] edgeSlots = readInts(in, edges);
+
+				// ids differ from run to run, so map the names of the file
+				byte[] modeIds = new byte[modeCount];
+				for (int i = 0; i < modeCount; i++)
+					modeIds[i] = ModeDictionary.intern(modeNames[i]);
+				byte[] modes = new byte[slots];
+				boolean[] reversed = new boolean[slots];
+				for (int slot = 0; slot < slots; slot++) {
+					modes[slot] = modeIds[slotModes[slot]];
+					reversed[slot] = (directions[slot] != 0);
+				}
+				return new CompactGraph<String>(elements, outOffsets, targets, weights, modes, reversed, edgeSlots);
+			} catch (RuntimeException e) {
+				// a truncated buffer or out of range id
+				throw new IOException(path + " is corrupt", e);
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Returns the first log segment whose changes are not in the snapshot at
+	 * {@code path}.
+	 *
+	 * @param path Path of the file
+	 * @return segment number, 0 for a file written before logging existed
+	 * @throws IOException if the file can't be read or is not a snapshot
+	 */
+	public static long segment(String path) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(path));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException(path + " is not a graph snapshot");
+			return (in.readInt() >= 2 ? in.readLong() : 0);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Inserts every airport and connection of a snapshot into g, in the order
+	 * they were inserted into the graph the snapshot was taken of.
+	 *
+	 * @param <V> Generic type of Vertex
+	 * @param s   Snapshot to be copied
+	 * @param g   Graph to be filled
+	 * @return Vertices inserted into g, by dense id of the snapshot
+	 */
+	public static <V> Vertex<V>[] materialize(CompactGraph<V> s, AdjacencyListGraph<V, Integer> g) {
+		@SuppressWarnings("unchecked")
+		Vertex<V>[] vertices = (Vertex<V>[]) new Vertex[s.numVertices()];
+		for (int v = 0; v < vertices.length; v++)
+			vertices[v] = g.insertVertex(s.element(v));
+		for (int k = 0; k < s.numEdges(); k++) {
+			int slot = s.edgeSlot(k);
+			g.insertEdge(vertices[s.tail(slot)], vertices[s.target(slot)], s.weight(slot), s.mode(slot));
+		}
+		return vertices;
+	}
+
+	/**
+	 * Writes a string as its length and UTF-8 bytes; null has length -1.
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+	 */
+	private static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Copies {@code count} ints out of the buffer in bulk.
+	 */
+	private static int[] readInts(ByteBuffer in, int count) {
+		int[] values = new int[count];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + 4 * count);
+		return values;
+	}
+
+}
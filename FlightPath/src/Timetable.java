@@ -0,0 +1,296 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A timetable of scheduled connections, each leaving one station at a fixed
+ * departure time and reaching another at a fixed arrival time. Times are
+ * minutes after midnight; an arrival may lie past midnight.
+ *
+ * Connections are kept in parallel arrays sorted by departure time (then
+ * arrival time), so {@link ConnectionScan} answers a query with one pass over
+ * contiguous memory. New connections are appended unsorted and merged into
+ * the sorted arrays the next time they are read.
+ *
+ * Stations get dense ids in the order they are first used. An instance is
+ * not thread-safe.
+ *
+ * @author Minh Nguyen
+ */
+public class Timetable<V> {
+
+	private Map<V, Integer> ids = new HashMap<V, Integer>();
+	private List<V> stations = new ArrayList<V>();
+
+	// connection i leaves origins[i] at departures[i] and reaches
+	// destinations[i] at arrivals[i]
+	private int[] departures = new int[16];
+	private int[] arrivals = new int[16];
+	private int[] origins = new int[16];
+	private int[] destinations = new int[16];
+	// ModeDictionary id of the mode of every connection
+	private byte[] modes = new byte[16];
+	private int size = 0;
+	// connections 0 .. sorted-1 are in order, the rest were added since
+	private int sorted = 0;
+
+	/**
+	 * Adds a scheduled connection.
+	 *
+	 * @param origin      Station the connection leaves
+	 * @param destination Station the connection reaches
+	 * @param departure   Departure time in minutes after midnight
+	 * @param duration    Duration of the connection in minutes, at least 1
+	 * @param mode        Mode of transportation, or null for none
+	 * @throws IllegalArgumentException if departure is negative, duration
+	 *                                  isn't positive, or mode is new and the
+	 *                                  ModeDictionary is full
+	 */
+	public void add(V origin, V destination, int departure, int duration, String mode)
+			throws IllegalArgumentException {
+		if (departure < 0)
+			throw new IllegalArgumentException("Times must not be negative");
+		// a connection arriving as it leaves could feed one sorted before it
+		// at the same time, which the scan would already have passed
+		if (duration <= 0)
+			throw new IllegalArgumentException("Scheduled connections must take at least 1 minute");
+		// before anything is stored, so a full dictionary leaves no trace
+		byte id = ModeDictionary.intern(mode);
+		if (size == departures.length) {
+			int capacity = size * 2;
+			departures = Arrays.copyOf(departures, capacity);
+			arrivals = Arrays.copyOf(arrivals, capacity);
+			origins = Arrays.copyOf(origins, capacity);
+			destinations = Arrays.copyOf(destinations, capacity);
+			modes = Arrays.copyOf(modes, capacity);
+		}
+		departures[size] = departure;
+		arrivals[size] = departure + duration;
+		origins[size] = intern(origin);
+		destinations[size] = intern(destination);
+		modes[size] = id;
+		size++;
+	}
+
+	/**
+	 * Returns the number of scheduled connections.
+	 *
+	 * @return number of connections
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of stations used by any connection.
+	 *
+	 * @return number of stations
+	 */
+	public int numStations() {
+		return stations.size();
+	}
+
+	/**
+	 * Returns the station with id {@code id}.
+	 *
+	 * @param id Dense id of a station
+	 * @return Station
+	 */
+	public V station(int id) {
+		return stations.get(id);
+	}
+
+	/**
+	 * Returns the id of a station.
+	 *
+	 * @param station Station to be looked up
+	 * @return id of the station, or -1 if no connection uses it
+	 */
+	public int find(V station) {
+		Integer id = ids.get(station);
+		return (id == null ? -1 : id);
+	}
+
+	/**
+	 * Returns the index of the first connection, in departure order, leaving
+	 * at or after {@code time}.
+	 *
+	 * @param time Time in minutes after midnight
+	 * @return index of the connection, or {@link #size()} if there is none
+	 */
+	public int firstDeparture(int time) {
+		sort();
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (departures[mid] < time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the departure time of the i-th connection in departure order.
+	 *
+	 * @param i Index of connection
+	 * @return departure time
+	 */
+	public int departure(int i) {
+		sort();
+		return departures[i];
+	}
+
+	/**
+	 * Returns the arrival time of the i-th connection in departure order.
+	 *
+	 * @param i Index of connection
+	 * @return arrival time
+	 */
+	public int arrival(int i) {
+		sort();
+		return arrivals[i];
+	}
+
+	/**
+	 * Returns the station id the i-th connection in departure order leaves.
+	 *
+	 * @param i Index of connection
+	 * @return id of origin station
+	 */
+	public int origin(int i) {
+		sort();
+		return origins[i];
+	}
+
+	/**
+	 * Returns the station id the i-th connection in departure order reaches.
+	 *
+	 * @param i Index of connection
+	 * @return id of destination station
+	 */
+	public int destination(int i) {
+		sort();
+		return destinations[i];
+	}
+
+	/**
+	 * Represents the i-th connection in departure order in the form of the
+	 * command that adds it, "[String] [String] [int] [String] [HHMM]".
+	 *
+	 * @param i Index of connection
+	 * @return String representation of the connection
+	 */
+	public String describe(int i) {
+		sort();
+		return stations.get(origins[i]) + " " + stations.get(destinations[i]) + " "
+				+ (arrivals[i] - departures[i]) + " " + ModeDictionary.name(modes[i]) + " "
+				+ formatTime(departures[i]);
+	}
+
+	/**
+	 * Parses a time of day in the format HHMM, e.g. 0930.
+	 *
+	 * @param time Time of day
+	 * @return minutes after midnight
+	 * @throws IllegalArgumentException if time is not a valid HHMM time
+	 */
+	public static int parseTime(String time) throws IllegalArgumentException {
+		if (time.length() != 4)
+			throw new IllegalArgumentException("Time must be in the format HHMM");
+		int minutes = 0;
+		for (int i = 0; i < 4; i++) {
+			char c = time.charAt(i);
+			if (c < '0' || c > '9')
+				throw new IllegalArgumentException("Time must be in the format HHMM");
+			minutes = minutes * 10 + (c - '0');
+		}
+		int hours = minutes / 100;
+		minutes %= 100;
+		if (hours > 23 || minutes > 59)
+			throw new IllegalArgumentException("Time must be in the format HHMM");
+		return hours * 60 + minutes;
+	}
+
+	/**
+	 * Formats minutes after midnight as a time of day HHMM, wrapping past
+	 * midnight.
+	 *
+	 * @param minutes Minutes after midnight
+	 * @return Time of day
+	 */
+	public static String formatTime(int minutes) {
+		minutes %= 24 * 60;
+		int hours = minutes / 60;
+		minutes %= 60;
+		return (hours < 10 ? "0" : "") + hours + (minutes < 10 ? "0" : "") + minutes;
+	}
+
+	/**
+	 * Returns the id of a station, giving it the next id if it is new.
+	 */
+	private int intern(V station) {
+		Integer id = ids.get(station);
+		if (id == null) {
+			id = stations.size();
+			ids.put(station, id);
+			stations.add(station);
+		}
+		return id;
+	}
+
+	/**
+	 * Sorts the connections added since the last sort and merges them into
+	 * the sorted ones.
+	 */
+	private void sort() {
+		if (sorted == size)
+			return;
+		// order the new connections by index, then merge both runs
+		Integer[] added = new Integer[size - sorted];
+		for (int i = 0; i < added.length; i++)
+			added[i] = sorted + i;
+		Arrays.sort(added, (a, b) -> compare(a, b));
+		int[] order = new int[size];
+		int i = 0, j = 0, k = 0;
+		while (i < sorted && j < added.length)
+			order[k++] = (compare(i, added[j]) <= 0 ? i++ : added[j++]);
+		while (i < sorted)
+			order[k++] = i++;
+		while (j < added.length)
+			order[k++] = added[j++];
+
+		departures = permute(departures, order);
+		arrivals = permute(arrivals, order);
+		origins = permute(origins, order);
+		destinations = permute(destinations, order);
+		byte[] orderedModes = new byte[modes.length];
+		for (k = 0; k < size; k++)
+			orderedModes[k] = modes[order[k]];
+		modes = orderedModes;
+		sorted = size;
+	}
+
+	/**
+	 * Compares connections a and b by departure time, then arrival time.
+	 */
+	private int compare(int a, int b) {
+		if (departures[a] != departures[b])
+			return Integer.compare(departures[a], departures[b]);
+		return Integer.compare(arrivals[a], arrivals[b]);
+	}
+
+	/**
+	 * Returns a copy of values with element k taken from index order[k].
+	 */
+	private int[] permute(int[] values, int[] order) {
+		int[] result = new int[values.length];
+		for (int k = 0; k < size; k++)
+			result[k] = values[order[k]];
+		return result;
+	}
+
+}